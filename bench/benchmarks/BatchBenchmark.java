@@ -0,0 +1,92 @@
+package benchmarks;
+
+import entities.units.Unit;
+import gamestates.Play;
+import pathfinding.BatchPathSolver;
+import pathfinding.PathRequest;
+import pathfinding.ReservationTable;
+import pathfinding.TileGrid;
+import pathfinding.TileGridSnapshot;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static benchmarks.PathfindingBenchmark.measure;
+import static pathfinding.AStar.*;
+import static pathfinding.PathRequest.PRIORITY_AUTOMATIC;
+
+/*
+ * Benchmarks BatchPathSolver, each op solving one request for every query of a scenario at once, the way the queue
+ * hands over a tick's requests when parallel path solving is toggled on. Solved on a single worker thread and on
+ * one per core, or MIN_THREADS if there are fewer cores.
+ *
+ * Before measuring, every scenario's batch is solved on both and the run stops if any path differs, since the
+ * solver's results aren't meant to depend on the number of threads.
+ *
+ * Run the same way as PathfindingBenchmark, with benchmarks.BatchBenchmark as the main class. It takes the same
+ * system properties.
+ */
+public class BatchBenchmark {
+
+    private static final int[] SIZES = {150, 250};
+    // Never fewer than this many threads, so the results are still compared against more than one worker on a
+    // machine with a single core
+    private static final int MIN_THREADS = 4;
+
+    public static void main(String[] args) throws Exception {
+        PathfindingBenchmark.setUp();
+        for (int size : SIZES) {
+            run(Scenario.create(Scenario.OPEN_GRASS, size, 1));
+            run(Scenario.create(Scenario.LAKE_MAZE, size, 1));
+        }
+        System.out.println("sink " + PathfindingBenchmark.sink);
+    }
+
+    private static void run(Scenario scenario) {
+        Play play = scenario.getPlay();
+        // Every unit is first sent to their own goal, so the batch has other units' reservations to steer around
+        for (int i = 0; i < scenario.getNumQueries(); i++) {
+            Unit u = scenario.getUnit(i);
+            Point goal = scenario.getGoal(i);
+            u.setPath(getUnitPathToTile(u, goal.x, goal.y, SEARCH_GRID, play));
+        }
+
+        TileGrid grid = TileGridSnapshot.of(play);
+        ReservationTable reservations = play.getReservationTable();
+        int numThreads = Math.max(MIN_THREADS, Runtime.getRuntime().availableProcessors());
+        BatchPathSolver singleThread = new BatchPathSolver(1);
+        BatchPathSolver allCores = new BatchPathSolver(numThreads);
+
+        List<ArrayList<Point>> expected = singleThread.solve(createBatch(scenario), grid, reservations);
+        List<ArrayList<Point>> actual = allCores.solve(createBatch(scenario), grid, reservations);
+        if (!expected.equals(actual))
+            throw new IllegalStateException(scenario.getName() + ": batch paths differ between 1 and " + numThreads + " threads");
+
+        measure(scenario, "batch-1-thread", query -> size(singleThread.solve(createBatch(scenario), grid, reservations)));
+        measure(scenario, "batch-" + numThreads + "-threads", query -> size(allCores.solve(createBatch(scenario), grid, reservations)));
+    }
+
+    private static List<PathRequest> createBatch(Scenario scenario) {
+        // Each unit heads for the next unit's goal, across the paths the others have reserved. Every other request
+        // uses jump points, so paths they find through a reservation are searched again tile by tile
+        int width = scenario.getPlay().getMap().getTileData()[0].length;
+        List<PathRequest> batch = new ArrayList<>(scenario.getNumQueries());
+        for (int i = 0; i < scenario.getNumQueries(); i++) {
+            Point goal = scenario.getGoal((i + 1) % scenario.getNumQueries());
+            PathRequest request = new PathRequest(scenario.getUnit(i), scenario.getStart(i),
+                    i % 2 == 0 ? SEARCH_GRID : SEARCH_JUMP_POINT, PRIORITY_AUTOMATIC, null);
+            request.addGoal(goal.y * width + goal.x, 0, 0);
+            batch.add(request);
+        }
+        return batch;
+    }
+
+    private static int size(List<ArrayList<Point>> paths) {
+        int size = 0;
+        for (ArrayList<Point> path : paths)
+            size += path == null ? -1 : path.size();
+        return size;
+    }
+
+}
@@ -0,0 +1,180 @@
+package benchmarks;
+
+import entities.units.Unit;
+import gamestates.Play;
+import pathfinding.Path;
+import pathfinding.PathRequest;
+import pathfinding.PathRequestQueue;
+import utils.ImageLoader;
+import utils.LoadSave;
+
+import java.awt.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static pathfinding.AStar.*;
+import static pathfinding.PathRequest.PRIORITY_AUTOMATIC;
+
+/*
+ * Benchmarks the pathfinding entry points the game calls most against fixed scenarios.
+ *
+ * Run from the project root with the compiled classes, the bench classes and res on the classpath:
+ *     java -Djava.awt.headless=true -cp out:bench-out:res benchmarks.PathfindingBenchmark
+ *
+ * Optional system properties:
+ *     bench.filter   only runs benchmarks whose "scenario/benchmark" name contains this
+ *     bench.warmup   warmup time per benchmark in milliseconds, 1000 by default
+ *     bench.time     measured time per benchmark in milliseconds, 3000 by default
+ *     bench.seed     seed every scenario is laid out from, 1 by default
+ */
+public class PathfindingBenchmark {
+
+    private static final int[] SIZES = {50, 150, 250};
+    // Walled off scenarios only need one size, the interesting part is how fast the search gives up or gets in
+    private static final int WALLED_OFF_SIZE = 150;
+    private static final int MAX_SAMPLES = 1 << 21;
+
+    private static final String FILTER = System.getProperty("bench.filter", "");
+    private static final long WARMUP_MILLIS = Long.getLong("bench.warmup", 1000);
+    private static final long MEASURE_MILLIS = Long.getLong("bench.time", 3000);
+    private static final long SEED = Long.getLong("bench.seed", 1);
+
+    interface Operation {
+        // Runs the query with the given index and returns something derived from its result
+        int run(int query);
+    }
+
+    // Results are folded in here so the JIT can't discard the searches that produced them
+    static long sink;
+
+    public static void main(String[] args) throws Exception {
+        setUp();
+        for (int size : SIZES) {
+            run(Scenario.create(Scenario.OPEN_GRASS, size, SEED));
+            run(Scenario.create(Scenario.LAKE_MAZE, size, SEED));
+        }
+        run(Scenario.create(Scenario.CASTLE_ZONE, WALLED_OFF_SIZE, SEED));
+        run(Scenario.create(Scenario.UNREACHABLE, WALLED_OFF_SIZE, SEED));
+
+        System.out.println("sink " + sink);
+    }
+
+    static void setUp() throws Exception {
+        // Maps save themselves when created, so they go to a throwaway folder instead of the player's maps
+        System.setProperty("user.home", Files.createTempDirectory("kac-bench").toString());
+        Files.createDirectories(Paths.get(LoadSave.parentFolderPath));
+        LoadSave.createFolders();
+        ImageLoader.loadImages();
+
+        System.out.printf("%-18s %-28s %12s %10s %10s %10s %10s %12s %10s %8s %8s%n", "scenario", "benchmark",
+                "ops/s", "p50 us", "p90 us", "p99 us", "max us", "B/op", "MB/s", "gc", "gc ms");
+    }
+
+    private static void run(Scenario scenario) {
+        Play play = scenario.getPlay();
+        measure(scenario, "pathFind-grid", query ->
+                size(pathFind(scenario.getStart(query), scenario.getGoal(query), SEARCH_GRID, play)));
+        measure(scenario, "pathFind-jumpPoint", query ->
+                size(pathFind(scenario.getStart(query), scenario.getGoal(query), SEARCH_JUMP_POINT, play)));
+        measure(scenario, "nearestAdjacentTile", query -> {
+            // Nothing is left in the cache from earlier queries, so every call measures a real search
+            play.getPathCache().clear();
+            Point goal = scenario.getGoal(query);
+            return size(getUnitPathToNearestAdjacentTile(scenario.getUnit(query), goal.x, goal.y, play));
+        });
+        measure(scenario, "nearestEnemy", query -> findNearestEnemy(scenario, query));
+    }
+
+    private static int findNearestEnemy(Scenario scenario, int query) {
+        // The same single search over every enemy in sight that UnitHandler queues for an idle unit, run through
+        // the time sliced queue on this thread so its allocations are counted
+        Play play = scenario.getPlay();
+        PathRequestQueue queue = play.getPathRequestQueue();
+        queue.setBatchSolver(null);
+
+        int[] result = {-1};
+        Unit attacker = scenario.getUnit(query);
+        PathRequest request = newUnitPathRequest(attacker, PRIORITY_AUTOMATIC, (path, tag) -> result[0] = path == null ? -1 : tag);
+        ArrayList<Point> enemyTiles = scenario.getEnemyTiles();
+        for (int i = 0; i < enemyTiles.size(); i++)
+            addAdjacentGoals(request, enemyTiles.get(i).x, enemyTiles.get(i).y, i, play);
+
+        if (request.getGoalCount() > 0) {
+            queue.submit(request);
+            while (!queue.isIdle())
+                queue.update();
+        }
+        return result[0];
+    }
+
+    static void measure(Scenario scenario, String benchmark, Operation operation) {
+        if (!(scenario.getName() + "/" + benchmark).contains(FILTER))
+            return;
+
+        int query = 0;
+        long warmupEnd = System.nanoTime() + WARMUP_MILLIS * 1_000_000;
+        while (System.nanoTime() < warmupEnd)
+            sink += operation.run(query++ % scenario.getNumQueries());
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long[] samples = new long[MAX_SAMPLES];
+        int numSamples = 0;
+
+        long gcCountBefore = getGcCount();
+        long gcMillisBefore = getGcMillis();
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long end = start + MEASURE_MILLIS * 1_000_000;
+        long now = start;
+        while (now < end && numSamples < MAX_SAMPLES) {
+            long opStart = now;
+            sink += operation.run(query++ % scenario.getNumQueries());
+            now = System.nanoTime();
+            samples[numSamples++] = now - opStart;
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        double seconds = (now - start) / 1e9;
+
+        Arrays.sort(samples, 0, numSamples);
+        System.out.printf("%-18s %-28s %12.1f %10.1f %10.1f %10.1f %10.1f %12d %10.1f %8d %8d%n",
+                scenario.getName(), benchmark, numSamples / seconds,
+                percentile(samples, numSamples, 0.5), percentile(samples, numSamples, 0.9),
+                percentile(samples, numSamples, 0.99), samples[numSamples - 1] / 1e3,
+                allocated / numSamples, allocated / seconds / (1024 * 1024),
+                getGcCount() - gcCountBefore, getGcMillis() - gcMillisBefore);
+    }
+
+    private static double percentile(long[] sortedSamples, int numSamples, double fraction) {
+        // In microseconds, nearest rank
+        int rank = (int) Math.ceil(fraction * numSamples) - 1;
+        return sortedSamples[Math.max(0, rank)] / 1e3;
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, gcBean.getCollectionCount());
+        return count;
+    }
+
+    private static long getGcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans())
+            millis += Math.max(0, gcBean.getCollectionTime());
+        return millis;
+    }
+
+    private static int size(ArrayList<Point> path) {
+        return path == null ? -1 : path.size();
+    }
+
+    private static int size(Path path) {
+        return path == null ? -1 : path.size();
+    }
+
+}
@@ -0,0 +1,79 @@
+package benchmarks;
+
+import entities.CombatEntity;
+import entities.Entity;
+import entities.units.Unit;
+import gamestates.Play;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.util.ArrayList;
+
+import static benchmarks.PathfindingBenchmark.measure;
+import static main.Game.TILE_SIZE;
+
+/*
+ * Benchmarks Entity.isTargetInRange against the ellipse test it replaced, each op checking one unit against every
+ * unit and building on the map at their sight range, the way auto-targeting used to.
+ *
+ * Run the same way as PathfindingBenchmark, with benchmarks.RangeBenchmark as the main class. It takes the same
+ * system properties.
+ */
+public class RangeBenchmark {
+
+    private static final int SIZE = 150;
+
+    public static void main(String[] args) throws Exception {
+        PathfindingBenchmark.setUp();
+        run(Scenario.create(Scenario.OPEN_GRASS, SIZE, 1));
+        run(Scenario.create(Scenario.CASTLE_ZONE, SIZE, 1));
+        System.out.println("sink " + PathfindingBenchmark.sink);
+    }
+
+    private static void run(Scenario scenario) {
+        Play play = scenario.getPlay();
+        ArrayList<CombatEntity> targets = new ArrayList<>(play.getUnitHandler().getUnits());
+        targets.addAll(play.getBuildingHandler().getBuildings());
+
+        measure(scenario, "isTargetInRange", query -> {
+            Unit attacker = scenario.getUnit(query);
+            int inRange = 0;
+            for (CombatEntity target : targets)
+                if (attacker.isTargetInRange(target, attacker.getSightRange()))
+                    inRange++;
+            return inRange;
+        });
+        measure(scenario, "isTargetInRange-ellipse", query -> {
+            Unit attacker = scenario.getUnit(query);
+            int inRange = 0;
+            for (CombatEntity target : targets)
+                if (isTargetInEllipse(attacker, target, attacker.getSightRange()))
+                    inRange++;
+            return inRange;
+        });
+    }
+
+    private static boolean isTargetInEllipse(Entity entity, Entity target, int tileRange) {
+        // The range check as it was before, an ellipse built for every call with each tile middle of the target
+        // tested against it
+        float startX = entity.getX() - tileRange * TILE_SIZE;
+        float startY = entity.getY() - tileRange * TILE_SIZE;
+        float size = (tileRange * 2 + 1) * TILE_SIZE;
+        Ellipse2D range = new Ellipse2D.Double(startX, startY, size, size);
+        Rectangle targetBounds = target.getHitbox();
+
+        int numTilesX = targetBounds.width / TILE_SIZE;
+        int numTilesY = targetBounds.height / TILE_SIZE;
+        int halfTileSize = TILE_SIZE / 2;
+
+        for (int tilesX = 0; tilesX < numTilesX; tilesX++)
+            for (int tilesY = 0; tilesY < numTilesY; tilesY++) {
+                int middleX = targetBounds.x + (tilesX * TILE_SIZE) + halfTileSize;
+                int middleY = targetBounds.y + (tilesY * TILE_SIZE) + halfTileSize;
+                if (range.contains(middleX, middleY))
+                    return true;
+            }
+        return false;
+    }
+
+}
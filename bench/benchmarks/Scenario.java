@@ -0,0 +1,177 @@
+package benchmarks;
+
+import entities.resources.ResourceObject;
+import entities.resources.Tree;
+import entities.units.Unit;
+import gamestates.Play;
+import objects.Map;
+import objects.Player;
+import objects.Tile;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static entities.buildings.Building.CASTLE_WALL;
+import static entities.units.Unit.FOOT_SOLDIER;
+import static main.Game.toPixelX;
+import static main.Game.toPixelY;
+import static objects.Tile.GRASS;
+import static objects.Tile.WATER_GRASS;
+import static pathfinding.AStar.isPointOpen;
+
+public class Scenario {
+
+    public static final int OPEN_GRASS = 0;
+    public static final int LAKE_MAZE = 1;
+    public static final int CASTLE_ZONE = 2;
+    public static final int UNREACHABLE = 3;
+
+    private static final int NUM_QUERIES = 64;
+    private static final int NUM_ENEMIES = 8;
+    private static final double TREE_DENSITY = 0.03;
+    private static final int CASTLE_SIZE = 21;
+    private static final int LAKE_RADIUS = 12;
+
+    // A map laid out the same way from the same seed every run, with a unit standing on every query's start tile
+    // and a handful of enemies for them to look for. Tiles and trees are written straight into the map, so the
+    // pathfinding structures Play builds up front are told about them once the map is laid out
+    private String name;
+    private Play play;
+    private Point[] starts = new Point[NUM_QUERIES];
+    private Point[] goals = new Point[NUM_QUERIES];
+    private Unit[] units = new Unit[NUM_QUERIES];
+    private ArrayList<Point> enemyTiles = new ArrayList<>();
+
+    private Scenario(String name, Play play) {
+        this.name = name;
+        this.play = play;
+    }
+
+    public static Scenario create(int scenarioType, int size, long seed) {
+        Map map = new Map("benchmark", size, size);
+        Play play = new Play(null, map, "benchmark", seed, 0);
+        Random random = new Random(seed);
+        Scenario scenario = new Scenario(getName(scenarioType) + "-" + size, play);
+
+        ResourceObject[][] resourceObjectData = play.getResourceObjectData();
+        for (int y = 0; y < size; y++)
+            for (int x = 0; x < size; x++) {
+                resourceObjectData[y][x] = null;
+                map.getTileData()[y][x] = new Tile(GRASS, 0);
+            }
+
+        int center = size / 2;
+        switch (scenarioType) {
+            case LAKE_MAZE -> {
+                // Bands of water across the map with the gap at alternating ends
+                for (int y = 3; y < size - 3; y += 6)
+                    for (int x = 0; x < size; x++) {
+                        boolean isGap = (y / 6) % 2 == 0 ? x >= size - 3 : x < 3;
+                        if (!isGap)
+                            map.getTileData()[y][x] = new Tile(WATER_GRASS, 0);
+                    }
+            }
+            case CASTLE_ZONE -> {
+                // A ring of castle walls around the middle with a single gate on the far side
+                int min = center - CASTLE_SIZE / 2;
+                int max = center + CASTLE_SIZE / 2;
+                Player owner = play.getPlayers().get(1);
+                for (int y = min; y <= max; y++)
+                    for (int x = min; x <= max; x++)
+                        if ((x == min || x == max || y == min || y == max) && !(y == max && x == center))
+                            play.getBuildingHandler().createBuilding(owner, toPixelX(x), toPixelY(y), CASTLE_WALL);
+            }
+            case UNREACHABLE -> {
+                // An island in the middle cut off by a ring of water
+                for (int y = 0; y < size; y++)
+                    for (int x = 0; x < size; x++) {
+                        double distance = Math.hypot(x - center, y - center);
+                        if (distance >= LAKE_RADIUS && distance < LAKE_RADIUS + 2)
+                            map.getTileData()[y][x] = new Tile(WATER_GRASS, 0);
+                    }
+            }
+        }
+
+        for (int y = 0; y < size; y++)
+            for (int x = 0; x < size; x++)
+                if (map.getTileData()[y][x].getTileType() == GRASS && play.getBuildingHandler().getBuildingAt(toPixelX(x), toPixelY(y)) == null
+                        && random.nextDouble() < TREE_DENSITY)
+                    resourceObjectData[y][x] = new Tree(x, y, y * size + x, 0);
+        play.staticTilesChanged(0, 0, size, size);
+
+        // Walled off scenarios search from outside the middle to inside it, the rest between any two open tiles
+        boolean isWalledOff = scenarioType == CASTLE_ZONE || scenarioType == UNREACHABLE;
+        // Square radii, so the island only gets tiles whose corners still fit inside the round lake
+        int innerRadius = scenarioType == CASTLE_ZONE ? CASTLE_SIZE / 2 - 1 : (LAKE_RADIUS - 1) * 7 / 10;
+        int outerRadius = scenarioType == CASTLE_ZONE ? CASTLE_SIZE / 2 + 1 : LAKE_RADIUS + 2;
+        Player attackers = play.getPlayers().get(0);
+        for (int i = 0; i < NUM_QUERIES; i++) {
+            scenario.starts[i] = isWalledOff ? scenario.getOpenTile(random, center, size / 2, outerRadius) : scenario.getOpenTile(random, center, size / 2, 0);
+            play.getUnitHandler().createUnit(attackers, scenario.starts[i], FOOT_SOLDIER);
+            scenario.units[i] = play.getUnitHandler().getUnitAtTile(scenario.starts[i].x, scenario.starts[i].y);
+        }
+
+        Player defenders = play.getPlayers().get(1);
+        for (int i = 0; i < NUM_ENEMIES; i++) {
+            Point tile = isWalledOff ? scenario.getOpenTile(random, center, innerRadius, 0) : scenario.getOpenTile(random, center, size / 2, 0);
+            play.getUnitHandler().createUnit(defenders, tile, FOOT_SOLDIER);
+            scenario.enemyTiles.add(tile);
+        }
+
+        for (int i = 0; i < NUM_QUERIES; i++)
+            scenario.goals[i] = isWalledOff ? scenario.getOpenTile(random, center, innerRadius, 0) : scenario.getOpenTile(random, center, size / 2, 0);
+        return scenario;
+    }
+
+    private Point getOpenTile(Random random, int center, int outerRadius, int innerRadius) {
+        // A random open tile whose distance from the center on either axis is between the two radii
+        int size = play.getMap().getTileData().length;
+        while (true) {
+            int x = Math.max(0, Math.min(size - 1, center - outerRadius + random.nextInt(2 * outerRadius + 1)));
+            int y = Math.max(0, Math.min(size - 1, center - outerRadius + random.nextInt(2 * outerRadius + 1)));
+            Point tile = new Point(x, y);
+            if (Math.max(Math.abs(x - center), Math.abs(y - center)) >= innerRadius && isPointOpen(tile, play))
+                return tile;
+        }
+    }
+
+    public static String getName(int scenarioType) {
+        return switch (scenarioType) {
+            case OPEN_GRASS -> "open-grass";
+            case LAKE_MAZE -> "lake-maze";
+            case CASTLE_ZONE -> "castle-zone";
+            case UNREACHABLE -> "unreachable";
+            default -> "unknown";
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Play getPlay() {
+        return play;
+    }
+
+    public int getNumQueries() {
+        return NUM_QUERIES;
+    }
+
+    public Point getStart(int query) {
+        return starts[query];
+    }
+
+    public Point getGoal(int query) {
+        return goals[query];
+    }
+
+    public Unit getUnit(int query) {
+        return units[query];
+    }
+
+    public ArrayList<Point> getEnemyTiles() {
+        return enemyTiles;
+    }
+
+}
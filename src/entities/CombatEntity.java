@@ -5,11 +5,8 @@ import entities.units.Unit;
 import gamestates.Play;
 import handlers.CombatEntityHandler;
 import objects.Player;
-import pathfinding.AStar;
 
-import java.awt.*;
 import java.io.Serializable;
-import java.util.ArrayList;
 
 import static main.Game.toTileX;
 import static main.Game.toTileY;
@@ -49,81 +46,25 @@ public abstract class CombatEntity extends Entity implements Serializable {
     }
 
     public boolean isLineOfSightOpen(Entity target) {
-        Point attackerTile;
-        Point targetTile;
-        Play play = combatEntityHandler.getPlay();
-
-        if (this instanceof Unit unit && unit.getPath() != null && !unit.getPath().isEmpty())
-            attackerTile = unit.getPath().get(0);
-        else
-            attackerTile = new Point(toTileX(hitbox.x), toTileY(hitbox.y));
-
-        if (target.getEntityType() == UNIT && ((Unit) target).getPath() != null && !(((Unit) target).getPath().isEmpty()))
-            targetTile = ((Unit) target).getPath().get(0);
-        else
-            targetTile = new Point(toTileX(target.getHitbox().x), toTileY(target.getHitbox().y));
-
-        Point currentTile = attackerTile;
-
-        while (!currentTile.equals(targetTile)) {
-            ArrayList<Point> neighbors = getTilesClosestToTarget(currentTile, targetTile, play);
-
-            if (neighbors.isEmpty())
-                return false;
-
-            Point nextTile = null;
-            for (Point neighbor : neighbors) {
-                if (neighbor.equals(targetTile))
-                    return true;
-
-                if (!play.isTileBlockedOrReserved(neighbor.x, neighbor.y, null)) {
-                    nextTile = neighbor;
-                    break;
-                }
-            }
-
-            if (nextTile != null)
-                currentTile = nextTile;
-            else
-                return false;
+        // A moving unit is treated as already on the tile they are stepping onto
+        int attackerTileX, attackerTileY, targetTileX, targetTileY;
+        if (this instanceof Unit unit && unit.getPath() != null && !unit.getPath().isEmpty()) {
+            attackerTileX = unit.getPath().getX(0);
+            attackerTileY = unit.getPath().getY(0);
+        } else {
+            attackerTileX = toTileX(hitbox.x);
+            attackerTileY = toTileY(hitbox.y);
         }
-        return true;
-    }
-
-    private ArrayList<Point> getTilesClosestToTarget(Point start, Point target, Play play) {
-        double lowestDist = Double.POSITIVE_INFINITY;
-        int gridWidth = play.getMap().getTileData()[0].length;
-        int gridHeight = play.getMap().getTileData().length;
-
-        ArrayList<Point> closestTiles = new ArrayList<>();
-        ArrayList<Point> allCardinalTiles = new ArrayList<>();
-
-        if (start.y > 0)
-            allCardinalTiles.add(new Point(start.x, start.y - 1));
-
-        if (start.x < gridWidth - 1)
-            allCardinalTiles.add(new Point(start.x + 1, start.y));
 
-
-        if (start.y < gridHeight - 1)
-            allCardinalTiles.add(new Point(start.x, start.y + 1));
-
-        if (start.x > 0)
-            allCardinalTiles.add(new Point(start.x - 1, start.y));
-
-        for (Point p : allCardinalTiles) {
-            double dist = AStar.getDistance(p, target);
-            if (dist == lowestDist)
-                closestTiles.add(p);
-            else if (dist < lowestDist) {
-                lowestDist = dist;
-                closestTiles.clear();
-                closestTiles.add(p);
-            }
+        if (target instanceof Unit unit && unit.getPath() != null && !unit.getPath().isEmpty()) {
+            targetTileX = unit.getPath().getX(0);
+            targetTileY = unit.getPath().getY(0);
+        } else {
+            targetTileX = toTileX(target.getHitbox().x);
+            targetTileY = toTileY(target.getHitbox().y);
         }
 
-        return closestTiles;
-
+        return combatEntityHandler.getPlay().getLineOfSight().isOpen(attackerTileX, attackerTileY, targetTileX, targetTileY);
     }
 
     public int getActionRange() {
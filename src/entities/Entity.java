@@ -7,7 +7,6 @@ import objects.Player;
 import pathfinding.AStar;
 
 import java.awt.*;
-import java.awt.geom.Ellipse2D;
 import java.io.Serializable;
 import java.util.ArrayList;
 
@@ -63,24 +62,33 @@ public abstract class Entity implements Serializable {
     }
 
     public boolean isTargetInRange(Entity target, int tileRange) {
-        float startX = x - tileRange * TILE_SIZE;
-        float startY = y - tileRange * TILE_SIZE;
-        float size = (tileRange * 2 + 1) * TILE_SIZE;
-        Ellipse2D range = new Ellipse2D.Double(startX, startY, size, size);
+        // Whether the middle of any tile the target covers is strictly inside the circle reaching tileRange and a
+        // half tiles out from the middle of this entity's first tile. The squared distance splits into an x and a y
+        // part, so only the tile middle nearest on each axis needs checking, whatever the size of the target
+        if (tileRange < 0)
+            return false;
         Rectangle targetBounds = target.getHitbox();
-
         int numTilesX = targetBounds.width / TILE_SIZE;
         int numTilesY = targetBounds.height / TILE_SIZE;
-        int halfTileSize = TILE_SIZE / 2;
-
-        for (int tilesX = 0; tilesX < numTilesX; tilesX++)
-            for (int tilesY = 0; tilesY < numTilesY; tilesY++) {
-                int middleX = targetBounds.x + (tilesX * TILE_SIZE) + halfTileSize;
-                int middleY = targetBounds.y + (tilesY * TILE_SIZE) + halfTileSize;
-                if (range.contains(middleX, middleY))
-                    return true;
-            }
-        return false;
+        if (numTilesX == 0 || numTilesY == 0)
+            return false;
+
+        double xDist = getDistanceToTileMiddles(targetBounds.x, numTilesX, x + TILE_SIZE / 2.0);
+        double yDist = getDistanceToTileMiddles(targetBounds.y, numTilesY, y + TILE_SIZE / 2.0);
+        double radius = (tileRange * 2 + 1) * TILE_SIZE / 2.0;
+        return xDist * xDist + yDist * yDist < radius * radius;
+    }
+
+    private static double getDistanceToTileMiddles(int start, int numTiles, double to) {
+        // Along one axis, the distance from the coordinate to the nearest tile middle of a hitbox starting at start
+        double first = start + TILE_SIZE / 2;
+        double last = first + (numTiles - 1) * TILE_SIZE;
+        if (to <= first)
+            return first - to;
+        if (to >= last)
+            return to - last;
+        double offset = (to - first) % TILE_SIZE;
+        return Math.min(offset, TILE_SIZE - offset);
     }
 
     public void updateHitbox() {
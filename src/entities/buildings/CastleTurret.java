@@ -1,5 +1,6 @@
 package entities.buildings;
 
+import entities.CombatEntity;
 import entities.units.Unit;
 import gamestates.Play;
 import handlers.BuildingHandler;
@@ -17,6 +18,8 @@ public class CastleTurret extends Building {
     public static final int TURRET_ATTACK_TICK_MAX = 50;
 
     private Unit occupyingUnit;
+    // Only kept between shots, the turret looks again after a load
+    private transient Unit target;
     private int attackTick = TURRET_ATTACK_TICK_MAX;
 
     public CastleTurret(Player player, int id, int x, int y, BuildingHandler buildingHandler) {
@@ -33,21 +36,29 @@ public class CastleTurret extends Building {
     }
 
     public void findAndAttackTarget() {
+        // Nothing is looked for until the turret is ready to fire. The last target is kept for as long as it can
+        // still be shot at, otherwise the nearest enemy unit in range that can be seen is taken
+        if (attackTick < TURRET_ATTACK_TICK_MAX) {
+            attackTick++;
+            return;
+        }
+
         Play play = combatEntityHandler.getPlay();
-        for (Unit target : play.getUnitHandler().getUnits()) {
-            if (target.getPlayer().getPlayerID() == player.getPlayerID() || !target.isActive()) continue;
-            if (isTargetInRange(target, actionRange) && isLineOfSightOpen(target)) {
-                if (attackTick >= TURRET_ATTACK_TICK_MAX) {
-                    play.getProjectileHandler().newProjectile(this, target, (int) (occupyingUnit.getDamage() * TURRET_DAMAGE_MODIFIER));
-                    attackTick = 0;
-                } else
-                    attackTick++;
-                return;
-            }
+        if (target != null && !(target.isActive() && isTargetInRange(target, actionRange)
+                && play.getUnitHandler().isSeen(this, target) && isLineOfSightOpen(target)))
+            target = null;
+
+        if (target == null)
+            for (CombatEntity enemy : play.getUnitHandler().getEnemiesInRange(this, actionRange, false))
+                if (isLineOfSightOpen(enemy)) {
+                    target = (Unit) enemy;
+                    break;
+                }
+
+        if (target != null) {
+            play.getProjectileHandler().newProjectile(this, target, (int) (occupyingUnit.getDamage() * TURRET_DAMAGE_MODIFIER));
+            attackTick = 0;
         }
-        // No target found
-        if (attackTick < TURRET_ATTACK_TICK_MAX)
-            attackTick++;
     }
 
     private void setDamageAndRanges(Unit occupyingUnit) {
@@ -67,5 +78,6 @@ public class CastleTurret extends Building {
     public void setOccupyingUnit(Unit occupyingUnit) {
         this.occupyingUnit = occupyingUnit;
         setDamageAndRanges(occupyingUnit);
+        combatEntityHandler.getPlay().buildingChanged(this);
     }
 }
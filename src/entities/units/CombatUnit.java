@@ -58,7 +58,7 @@ public class CombatUnit extends Unit {
 
     private void occupyTurret() {
         CastleTurret targetCT = (CastleTurret) targetEntity;
-        active = false;
+        setActive(false);
         x = targetCT.getX();
         y = targetCT.getY();
         targetCT.setOccupyingUnit(this);
@@ -5,8 +5,10 @@ import entities.buildings.Farm;
 import entities.buildings.Refinery;
 import entities.buildings.StorageHut;
 import entities.resources.ResourceObject;
+import gamestates.Play;
 import handlers.UnitHandler;
 import objects.Player;
+import pathfinding.Path;
 
 import java.awt.*;
 import java.util.ArrayList;
@@ -19,6 +21,8 @@ import static entities.buildings.StorageHut.SH_MAX_STONE;
 import static entities.resources.ResourceObject.*;
 import static main.Game.*;
 import static pathfinding.AStar.getUnitPathToNearestAdjacentTile;
+import static pathfinding.AStar.requestUnitPathToNearestAdjacentTile;
+import static pathfinding.PathRequest.PRIORITY_AUTOMATIC;
 
 public class Laborer extends Unit {
 
@@ -91,9 +95,13 @@ public class Laborer extends Unit {
                         if (previousTargetTile != null && previousTargetType != -1) {
                             ResourceObject previousTarget = combatEntityHandler.getPlay().getResourceObjectData()[previousTargetTile.y][previousTargetTile.x];
                             if (previousTarget != null) {
-                                path = getUnitPathToNearestAdjacentTile(this, previousTargetTile.x, previousTargetTile.y, combatEntityHandler.getPlay());
-                                if (path != null)
-                                    targetEntity = previousTarget;
+                                Play play = combatEntityHandler.getPlay();
+                                Point previousTile = previousTargetTile;
+                                requestUnitPathToNearestAdjacentTile(this, previousTile.x, previousTile.y, PRIORITY_AUTOMATIC, play, (newPath, tag) -> {
+                                    setPath(newPath);
+                                    if (tag >= 0 && newPath != null && play.getResourceObjectData()[previousTile.y][previousTile.x] == previousTarget)
+                                        setTargetEntity(previousTarget);
+                                });
                             } else
                                 locateAndTargetNearestResource(previousTargetType, previousTargetTile.x, previousTargetTile.y);
                         }
@@ -131,7 +139,7 @@ public class Laborer extends Unit {
         if (buildingType != -1) {
             ArrayList<Building> buildings = combatEntityHandler.getPlay().getBuildingHandler().getBuildings();
             Building closest = null;
-            ArrayList<Point> pathToClosest = null;
+            Path pathToClosest = null;
             for (Building b : buildings) {
                 if (b.getSubType() == buildingType) {
                     boolean hasRoom = switch (resourceType) {
@@ -146,15 +154,15 @@ public class Laborer extends Unit {
                         closest = b;
                         break;
                     }
-                    ArrayList<Point> currPath = getUnitPathToNearestAdjacentTile(this, toTileX(b.getX()), toTileY(b.getY()), combatEntityHandler.getPlay());
+                    Path currPath = getUnitPathToNearestAdjacentTile(this, toTileX(b.getX()), toTileY(b.getY()), combatEntityHandler.getPlay());
                     if (currPath != null && (pathToClosest == null || (currPath.size() < pathToClosest.size()))) {
                         closest = b;
                         pathToClosest = currPath;
                     }
                 }
             }
-            targetEntity = closest;
-            path = pathToClosest;
+            setTargetEntity(closest);
+            setPath(pathToClosest);
             if (closest == null) {
                 System.out.println("Could not locate a " + (buildingType == STORAGE_HUT ? "storage hut" : "refinery") + " with enough space!");
                 setState(IDLE);
@@ -214,7 +222,7 @@ public class Laborer extends Unit {
         int farmX = (int) targetEntity.getX();
         int farmY = (int) targetEntity.getY();
 
-        active = false;
+        setActive(false);
         x = farmX;
         y = farmY;
         if (!currFarmers.isEmpty()) {
@@ -8,6 +8,9 @@ import handlers.UnitHandler;
 import entities.Entity;
 import objects.Player;
 import pathfinding.AStar;
+import pathfinding.FlowField;
+import pathfinding.Path;
+import pathfinding.PathRequest;
 import utils.ImageLoader;
 
 import java.awt.*;
@@ -55,8 +58,13 @@ public abstract class Unit extends CombatEntity implements Serializable {
     public static final int WALKING = 2;
 
     private static final int MAX_CYCLES_WITHOUT_FOOD = 2;
+    // The next leg towards a far away goal is asked for once this few tiles of the current one are left
+    private static final int ONWARD_REQUEST_TILES = 2;
 
-    protected ArrayList<Point> path;
+    protected Path path;
+    protected Point pathGoal;
+    protected transient PathRequest pathRequest;
+    protected transient FlowField flowField;
 
     protected int unitType;
     protected int attackStyle;
@@ -266,8 +274,8 @@ public abstract class Unit extends CombatEntity implements Serializable {
         if (state != WALKING)
             setState(WALKING);
         // Check if Unit has reached the current path point based on movement speed
-        int currentX = toPixelX(path.get(0).x);
-        int currentY = toPixelY(path.get(0).y);
+        int currentX = toPixelX(path.getX(0));
+        int currentY = toPixelY(path.getY(0));
 
         // Round to two decimal places to get rid of any floating point errors
         float roundX = Math.round(x * 100) / 100.0f;
@@ -278,18 +286,19 @@ public abstract class Unit extends CombatEntity implements Serializable {
             x = currentX;
             y = currentY;
             updateHitbox();
-            path.remove(0);
+            path.pop();
+            combatEntityHandler.getPlay().getReservationTable().reserve(this);
             if (!path.isEmpty()) {
                 // Check if they can reach their target from where they currently are
                 if (targetEntity != null && isTargetActionable()) {
-                    path = null;
+                    setPath(null);
                     setState(IDLE);
                     return;
                 }
 
                 Play play = combatEntityHandler.getPlay();
                 Point next = path.get(0);
-                Point last = path.get(path.size() - 1);
+                Point last = path.getLast();
 
                 boolean isNextTileBlocked = play.isTileBlockedOrReserved(next.x, next.y, this);
                 boolean isLastTileBlocked = play.isTileBlockedOrReserved(last.x, last.y, this);
@@ -299,26 +308,69 @@ public abstract class Unit extends CombatEntity implements Serializable {
                     if (isNextTileBlocked)
                         // Both the next and last tiles are blocked. Setting path to null ensures the next tile will not be used
                         setPath(null);
-                    setPath(AStar.getUnitPathToNearestAdjacentTile(this, goal.x, goal.y, play));
+                    setPath(AStar.replanUnitPathToNearestAdjacentTile(this, goal.x, goal.y, play));
                 } else {
                     if (isNextTileBlocked) {
                         // Next tile is blocked, last tile is open
-                        Point start = new Point(toTileX(x), toTileY(y));
-                        path = AStar.pathFind(start, last, play);
+                        setPath(null);
+                        setPath(AStar.replanUnitPathToTile(this, last.x, last.y, play));
                     }
                 }
             }
         }
 
+        if (path != null && !path.isEmpty() && path.size() <= ONWARD_REQUEST_TILES && pathGoal != null && pathRequest == null
+                && !path.isAt(path.size() - 1, pathGoal))
+            continuePathOnward(combatEntityHandler.getPlay());
+        if ((path == null || path.isEmpty()) && pathGoal != null && pathRequest == null)
+            continuePathToGoal(combatEntityHandler.getPlay());
+
         if (path == null || path.isEmpty()) {
             setState(IDLE);
             return;
         }
 
-        setDirectionWithPath(path.get(0));
+        setDirectionWithPath(path.getX(0), path.getY(0));
         moveInDirection(direction);
     }
 
+    private void continuePathToGoal(Play play) {
+        // Long paths are only refined a few chunks ahead, so the rest is requested once the unit gets there
+        if (toTileX(x) == pathGoal.x && toTileY(y) == pathGoal.y) {
+            pathGoal = null;
+            return;
+        }
+
+        AStar.requestUnitPathToTile(this, pathGoal.x, pathGoal.y, AStar.SEARCH_JUMP_POINT, PathRequest.PRIORITY_AUTOMATIC, play,
+                (newPath, tag) -> {
+                    setPath(newPath);
+                    if (pathGoal != null && (path == null || path.isEmpty() || path.isAt(path.size() - 1, pathGoal)))
+                        pathGoal = null;
+                });
+    }
+
+    private void continuePathOnward(Play play) {
+        // Asks for the next leg from the end of this one while the unit walks the last few tiles, so they don't stop
+        // at the chunk waypoint to wait for it. A leg that arrives after the unit left their path is dropped, and
+        // asked for again once they are done with whatever path they have instead
+        Point waypoint = path.getLast();
+        AStar.requestUnitPathOnward(this, pathGoal.x, pathGoal.y, AStar.SEARCH_JUMP_POINT, PathRequest.PRIORITY_AUTOMATIC, play,
+                (newPath, tag) -> {
+                    if (newPath == null) {
+                        pathGoal = null;
+                        return;
+                    }
+                    if (path != null && !path.isEmpty() && path.isAt(path.size() - 1, waypoint))
+                        setPath(path.append(newPath));
+                    else if ((path == null || path.isEmpty()) && toTileX(x) == waypoint.x && toTileY(y) == waypoint.y)
+                        setPath(newPath);
+                    else
+                        return;
+                    if (pathGoal != null && (path.isEmpty() || path.isAt(path.size() - 1, pathGoal)))
+                        pathGoal = null;
+                });
+    }
+
     private boolean isTargetActionable() {
         if (isTargetSamePlayer()) {
             if ((targetEntity instanceof CastleTurret && attackStyle == RANGED) || (targetEntity instanceof Farm && this instanceof Laborer))
@@ -328,9 +380,9 @@ public abstract class Unit extends CombatEntity implements Serializable {
         return false;
     }
 
-    protected void setDirectionWithPath(Point point) {
-        int pX = toPixelX(point.x);
-        int pY = toPixelY(point.y);
+    protected void setDirectionWithPath(int tileX, int tileY) {
+        int pX = toPixelX(tileX);
+        int pY = toPixelY(tileY);
 
         // Diagonal Directions
         if (pX < x && pY < y)
@@ -406,7 +458,7 @@ public abstract class Unit extends CombatEntity implements Serializable {
         cyclesSinceLastFed++;
         if (cyclesSinceLastFed > MAX_CYCLES_WITHOUT_FOOD) {
             System.out.println(getUnitName(unitType) + " ID: " + id + " has starved to death!");
-            active = false;
+            setActive(false);
             if (combatEntityHandler.getPlay().getSelectedEntity() == this)
                 combatEntityHandler.getPlay().setSelectedEntity(null);
         }
@@ -420,10 +472,23 @@ public abstract class Unit extends CombatEntity implements Serializable {
     }
 
     public void reactivate() {
-        targetEntity = null;
+        setTargetEntity(null);
         setState(IDLE);
         direction = DOWN;
-        active = true;
+        setActive(true);
+    }
+
+    @Override
+    public void updateHitbox() {
+        super.updateHitbox();
+        combatEntityHandler.getPlay().unitTilesChanged(this);
+    }
+
+    @Override
+    public void setActive(boolean active) {
+        // Inactive units are inside a building or dead, and stop blocking the tiles they were on
+        super.setActive(active);
+        combatEntityHandler.getPlay().unitTilesChanged(this);
     }
 
     public int getActionTickMax() {
@@ -462,20 +527,63 @@ public abstract class Unit extends CombatEntity implements Serializable {
     }
 
 
-    public ArrayList<Point> getPath() {
+    public Path getPath() {
         return path;
     }
 
-    public void setPath(ArrayList<Point> path) {
+    public void setPath(Path path) {
         this.path = path;
+        combatEntityHandler.getPlay().getReservationTable().reserve(this);
+    }
+
+    public void truncatePath(int size) {
+        // Keeps only the unit's next size tiles
+        if (path == null)
+            return;
+        path.truncate(size);
+        combatEntityHandler.getPlay().getReservationTable().reserve(this);
+    }
+
+    public float getSpeed() {
+        return speed;
     }
 
     public Entity getTargetEntity() {
         return targetEntity;
     }
 
+    public PathRequest getPathRequest() {
+        return pathRequest;
+    }
+
+    public boolean hasPendingPathRequest() {
+        return pathRequest != null;
+    }
+
+    public void setPathRequest(PathRequest pathRequest) {
+        // A new request replaces any the unit is still waiting on
+        if (this.pathRequest != null && this.pathRequest != pathRequest)
+            this.pathRequest.cancel();
+        this.pathRequest = pathRequest;
+    }
+
+    public void setFlowField(FlowField flowField) {
+        // Units hold a reference to the flow field they follow for as long as they target its building
+        if (this.flowField != null)
+            combatEntityHandler.getPlay().getFlowFieldCache().release(this.flowField);
+        this.flowField = flowField;
+    }
+
+    public void setPathGoal(Point pathGoal) {
+        this.pathGoal = pathGoal;
+    }
+
     public void setTargetEntity(Entity targetEntity) {
+        if (flowField != null && flowField.getBuilding() != targetEntity)
+            setFlowField(null);
         this.targetEntity = targetEntity;
+        if (targetEntity != null)
+            pathGoal = null;
     }
 
 }
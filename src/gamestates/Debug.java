@@ -22,7 +22,11 @@ public class Debug extends State {
         SHOW_CHUNK_BORDERS("Show chunk borders"),
         SHOW_TARGET_HITBOXES("Show target hitboxes"),
         SHOW_TILE_COORDINATES("Show tile coordinates"),
-        SHOW_UNIT_IDS("Show unit IDs");
+        SHOW_UNIT_IDS("Show unit IDs"),
+        SHOW_PATH_CACHE_STATS("Show path cache stats"),
+        SHOW_FOG_OF_WAR("Show fog of war"),
+        SHOW_ENEMY_THREAT("Show enemy threat"),
+        PARALLEL_PATH_SOLVING("Parallel path solving");
 
         private final String label;
 
@@ -7,14 +7,28 @@ import entities.resources.ResourceObject;
 import entities.units.Laborer;
 import entities.units.Unit;
 import handlers.BuildingHandler;
+import handlers.InfluenceMap;
 import handlers.ProjectileHandler;
 import handlers.ResourceObjectHandler;
 import handlers.UnitHandler;
+import handlers.VisibilityGrid;
 import main.Game;
 import objects.Chunk;
 import entities.Entity;
 import objects.Map;
 import objects.Player;
+import pathfinding.ChunkGraph;
+import pathfinding.FlowField;
+import pathfinding.FlowFieldCache;
+import pathfinding.LandmarkTable;
+import pathfinding.LineOfSight;
+import pathfinding.OccupancyGrid;
+import pathfinding.Path;
+import pathfinding.PathCache;
+import pathfinding.PathRequestQueue;
+import pathfinding.RegionMap;
+import pathfinding.ReplannerPool;
+import pathfinding.ReservationTable;
 import ui.bars.ActionBar;
 import ui.bars.GameStatBar;
 import ui.overlays.BuildingSelection;
@@ -37,10 +51,20 @@ import static entities.resources.ResourceObject.TREE;
 import static entities.units.Unit.*;
 import static main.Game.*;
 import static pathfinding.AStar.*;
+import static pathfinding.PathRequest.PRIORITY_COMMAND;
 import static ui.bars.TopBar.TOP_BAR_HEIGHT;
 
 public class Play extends MapState implements Savable, Serializable {
 
+    private static final Font DEBUG_STATS_FONT = new Font("Monospaced", Font.BOLD, 14);
+    private static final Color FOG_EXPLORED_COLOR = new Color(0, 0, 0, 110);
+    private static final Color FOG_UNEXPLORED_COLOR = new Color(0, 0, 0, 235);
+    // How strongly a tile is tinted for each point of enemy damage that reaches it, up to the max
+    private static final int ENEMY_THREAT_ALPHA_PER_DAMAGE = 4;
+    private static final int ENEMY_THREAT_MAX_ALPHA = 160;
+    // Units sent at one building before they share a flow field
+    private static final int FLOW_FIELD_MIN_UNITS = 4;
+
     // Click actions
     public static final int CA_SELECT = 0;
     private static final int CA_MOVE = 1;
@@ -68,6 +92,18 @@ public class Play extends MapState implements Savable, Serializable {
     private ProjectileHandler projectileHandler;
     private ResourceObjectHandler resourceObjectHandler;
     private ResourceObject[][] resourceObjectData;
+    private transient ChunkGraph chunkGraph;
+    private transient RegionMap regionMap;
+    private transient PathRequestQueue pathRequestQueue;
+    private transient FlowFieldCache flowFieldCache;
+    private transient PathCache pathCache;
+    private transient ReplannerPool replannerPool;
+    private transient ReservationTable reservationTable;
+    private transient LandmarkTable landmarkTable;
+    private transient OccupancyGrid occupancyGrid;
+    private transient LineOfSight lineOfSight;
+    private transient VisibilityGrid visibilityGrid;
+    private transient InfluenceMap influenceMap;
 
     private String name;
     private long seed;
@@ -99,6 +135,8 @@ public class Play extends MapState implements Savable, Serializable {
 
         initPlayers(map, playerID);
         initComponents(map);
+        // Built up front, it takes long enough that building it in the middle of a tick would hitch the game
+        this.landmarkTable = new LandmarkTable(this);
 
         int xStart = (GAME_AREA_WIDTH - Overlay.getOverlayWidth(Overlay.OVERLAY_LARGE)) / 2;
         int yStart = TOP_BAR_HEIGHT + (GAME_AREA_HEIGHT - Overlay.getOverlayHeight(Overlay.OVERLAY_LARGE)) / 2;
@@ -139,9 +177,15 @@ public class Play extends MapState implements Savable, Serializable {
             lastFoodCycle = System.currentTimeMillis();
         }
         if (!paused) {
+            // Remembered line of sight answers expire first, before any handler can ask and reuse last tick's
+            getLineOfSight().update();
             buildingHandler.update(foodCycleThisUpdate);
             projectileHandler.update();
+            getReservationTable().update();
+            if (replannerPool != null)
+                replannerPool.update();
             unitHandler.update(foodCycleThisUpdate);
+            getPathRequestQueue().update();
         }
 
         if (actionBar != null)
@@ -171,6 +215,8 @@ public class Play extends MapState implements Savable, Serializable {
         resourceObjectHandler.render(g, mapXOffset, mapYOffset);
         projectileHandler.render(g, mapXOffset, mapYOffset);
         unitHandler.render(g, mapXOffset, mapYOffset);
+        if (Debug.config.get(Debug.DebugToggle.SHOW_FOG_OF_WAR))
+            drawFogOfWar(g);
 
         highlightSelectedObject(g, mapXOffset, mapYOffset);
 
@@ -179,6 +225,10 @@ public class Play extends MapState implements Savable, Serializable {
             drawChunkBorders(g);
         if (Debug.config.get(Debug.DebugToggle.SHOW_TILE_COORDINATES))
             drawTileCoords(g, mapXOffset, mapYOffset);
+        if (Debug.config.get(Debug.DebugToggle.SHOW_PATH_CACHE_STATS))
+            drawPathCacheStats(g);
+        if (Debug.config.get(Debug.DebugToggle.SHOW_ENEMY_THREAT))
+            drawEnemyThreat(g);
 
         actionBar.render(g);
         gameStatBar.render(g);
@@ -243,6 +293,65 @@ public class Play extends MapState implements Savable, Serializable {
             }
     }
 
+    private void drawFogOfWar(Graphics g) {
+        // Tiles the active player has seen before are dimmed, tiles they have never seen are blacked out
+        VisibilityGrid visibility = getVisibilityGrid();
+        Player player = getPlayerByID(activePlayerID);
+        int firstX = mapXOffset / TILE_SIZE;
+        int firstY = mapYOffset / TILE_SIZE;
+        for (int y = firstY; y < Math.min(tileData.length, firstY + GAME_AREA_TILE_HEIGHT); y++)
+            for (int x = firstX; x < Math.min(tileData[y].length, firstX + GAME_AREA_TILE_WIDTH); x++)
+                if (!visibility.isTileVisible(player, x, y)) {
+                    g.setColor(visibility.isTileExplored(player, x, y) ? FOG_EXPLORED_COLOR : FOG_UNEXPLORED_COLOR);
+                    g.fillRect(toPixelX(x) - mapXOffset, toPixelY(y) - mapYOffset, TILE_SIZE, TILE_SIZE);
+                }
+    }
+
+    private void drawPathCacheStats(Graphics g) {
+        PathCache pc = getPathCache();
+        long lookups = pc.getHits() + pc.getMisses();
+        int hitRate = lookups == 0 ? 0 : (int) (pc.getHits() * 100 / lookups);
+        g.setFont(DEBUG_STATS_FONT);
+        g.setColor(Color.RED);
+        int yStart = TOP_BAR_HEIGHT + g.getFontMetrics().getHeight();
+        g.drawString("Path cache: " + pc.size() + " entries, " + hitRate + "% hit rate", 8, yStart);
+        g.drawString("Hits: " + pc.getHits() + ", misses: " + pc.getMisses() + ", invalidations: " + pc.getInvalidations(),
+                8, yStart + g.getFontMetrics().getHeight());
+        PathRequestQueue queue = getPathRequestQueue();
+        g.drawString("Path requests: " + queue.getRequestsCompleted() + ", cut off by search limits: " + queue.getRequestsCutOff()
+                        + ", coalesced: " + queue.getRequestsCoalesced(),
+                8, yStart + g.getFontMetrics().getHeight() * 2);
+    }
+
+    private void drawEnemyThreat(Graphics g) {
+        // Tiles are tinted by how much damage the active player's enemies can bring to them, and each chunk is
+        // labelled with the enemies' strength standing in it. The influence map is only built once this is shown
+        InfluenceMap influence = getInfluenceMap();
+        Player player = getPlayerByID(activePlayerID);
+        int firstX = mapXOffset / TILE_SIZE;
+        int firstY = mapYOffset / TILE_SIZE;
+        for (int y = firstY; y < Math.min(tileData.length, firstY + GAME_AREA_TILE_HEIGHT); y++)
+            for (int x = firstX; x < Math.min(tileData[y].length, firstX + GAME_AREA_TILE_WIDTH); x++) {
+                int threat = influence.getEnemyThreat(player, x, y);
+                if (threat > 0) {
+                    g.setColor(new Color(255, 0, 0, Math.min(ENEMY_THREAT_MAX_ALPHA, threat * ENEMY_THREAT_ALPHA_PER_DAMAGE)));
+                    g.fillRect(toPixelX(x) - mapXOffset, toPixelY(y) - mapYOffset, TILE_SIZE, TILE_SIZE);
+                }
+            }
+
+        g.setFont(DEBUG_STATS_FONT);
+        g.setColor(Color.RED);
+        Chunk[][] chunks = map.getChunks();
+        for (int y = 0; y < chunks.length; y++)
+            for (int x = 0; x < chunks[y].length; x++) {
+                int strength = influence.getEnemyChunkStrength(player, x, y);
+                if (strength > 0) {
+                    Rectangle bounds = chunks[y][x].getBounds();
+                    g.drawString(String.valueOf(strength), bounds.x - mapXOffset + 4, bounds.y - mapYOffset + g.getFontMetrics().getHeight());
+                }
+            }
+    }
+
     public void determineAction() {
         clickAction = -1;
         int sgoType = (selectedEntity != null) ? selectedEntity.getEntityType() : -1;
@@ -331,19 +440,62 @@ public class Play extends MapState implements Savable, Serializable {
     }
 
     public Entity getEntityAtTile(int tileX, int tileY) {
-        Building b = buildingHandler.getBuildingAt(toPixelX(tileX), toPixelY(tileY));
+        Building b = buildingHandler.getBuildingAtTile(tileX, tileY);
         if (b != null)
             return b;
 
-        Unit u = unitHandler.getUnitAtTile(tileX, tileY);
-        if (u != null)
-            return u;
+        if (getOccupancyGrid().hasUnit(tileX, tileY))
+            return unitHandler.getUnitAtTile(tileX, tileY);
 
         return resourceObjectData[tileY][tileX];
     }
 
     public boolean isTileBlockedOrReserved(int tileX, int tileY, Unit excludedUnit) {
-        return getEntityAtTile(tileX, tileY) != null || unitHandler.isTileReserved(tileX, tileY, excludedUnit);
+        return getOccupancyGrid().isBlocked(tileX, tileY) || unitHandler.isTileReserved(tileX, tileY, excludedUnit);
+    }
+
+    public void unitTilesChanged(Unit u) {
+        // Called whenever a unit moves, spawns, dies or goes inside a building
+        if (occupancyGrid != null)
+            occupancyGrid.unitChanged(u);
+        // Starting units are spawned while the unit handler is still being created
+        if (unitHandler != null)
+            unitHandler.unitTilesChanged(u);
+        if (visibilityGrid != null)
+            visibilityGrid.unitChanged(u);
+        if (influenceMap != null)
+            influenceMap.unitChanged(u);
+    }
+
+    public void buildingChanged(Building b) {
+        // Called whenever a building appears, dies, is replaced or changes its sight range
+        if (visibilityGrid != null)
+            visibilityGrid.buildingChanged(b);
+        if (influenceMap != null)
+            influenceMap.buildingChanged(b);
+    }
+
+    public void staticTilesChanged(int tileX, int tileY, int tileWidth, int tileHeight) {
+        // Called whenever a building or resource appears or disappears. The occupancy grid goes first, the others
+        // read tiles through it
+        if (occupancyGrid != null)
+            occupancyGrid.staticTilesChanged(tileX, tileY, tileWidth, tileHeight);
+        if (chunkGraph != null)
+            chunkGraph.tilesChanged(tileX, tileY, tileWidth, tileHeight);
+        if (regionMap != null)
+            regionMap.tilesChanged(tileX, tileY, tileWidth, tileHeight);
+        if (landmarkTable != null)
+            landmarkTable.tilesChanged(tileX, tileY, tileWidth, tileHeight);
+        if (flowFieldCache != null)
+            flowFieldCache.tilesChanged();
+        if (pathCache != null)
+            pathCache.tilesChanged(tileX, tileY, tileWidth, tileHeight);
+        if (replannerPool != null)
+            replannerPool.tilesChanged();
+        if (lineOfSight != null)
+            lineOfSight.tilesChanged();
+        if (influenceMap != null)
+            influenceMap.resourcesChanged(tileX, tileY, tileWidth, tileHeight);
     }
 
     private boolean canBuildHere(int x, int y, boolean checkAllBuildingTiles) {
@@ -454,16 +606,44 @@ public class Play extends MapState implements Savable, Serializable {
 
     private void setSelectedUnitTargetToHoverEntity(Unit selectedUnit) {
         int actionRange = (hoverEntity instanceof CastleTurret ? 1 : selectedUnit.getActionRange());
-
-        boolean isInRangeAndReachable = selectedUnit.isTargetInRange(hoverEntity, actionRange) && selectedUnit.isLineOfSightOpen(hoverEntity);
-        ArrayList<Point> path = null;
-        if (!isInRangeAndReachable) {
-            path = getUnitPathToNearestAdjacentTile(selectedUnit, tileX, tileY, this);
-            if (path != null)
+        Entity target = hoverEntity;
+
+        boolean isInRangeAndReachable = selectedUnit.isTargetInRange(target, actionRange) && selectedUnit.isLineOfSightOpen(target);
+        if (isInRangeAndReachable) {
+            selectedUnit.setPathRequest(null);
+            selectedUnit.setTargetEntity(target);
+        } else if (target instanceof Building building && isSentInGroup(building)) {
+            // Units sent at the same building share one flow field instead of searching individually
+            FlowField flowField = getFlowFieldCache().acquire(building);
+            Path path = getUnitPathFromFlowField(selectedUnit, flowField);
+            if (path != null) {
+                selectedUnit.setPathRequest(null);
                 selectedUnit.setPath(path);
-        }
-        if (isInRangeAndReachable || path != null)
-            selectedUnit.setTargetEntity(hoverEntity);
+                selectedUnit.setTargetEntity(building);
+                selectedUnit.setFlowField(flowField);
+            } else
+                getFlowFieldCache().release(flowField);
+        } else
+            requestUnitPathToNearestAdjacentTile(selectedUnit, tileX, tileY, PRIORITY_COMMAND, this, (path, tag) -> {
+                if (path != null && target.isActive()) {
+                    // A search cut off short of the target still moves the unit as close as it got
+                    selectedUnit.setPath(path);
+                    if (tag >= 0)
+                        selectedUnit.setTargetEntity(target);
+                }
+            });
+    }
+
+    private boolean isSentInGroup(Building building) {
+        // A flow field costs a search over the whole map, which only pays off once enough units are sent at the
+        // same building. Until then each of them gets a directed search of their own
+        if (getFlowFieldCache().contains(building))
+            return true;
+        int numSent = 1;
+        for (Unit u : unitHandler.getUnits())
+            if (u.isActive() && u.getTargetEntity() == building)
+                numSent++;
+        return numSent >= FLOW_FIELD_MIN_UNITS;
     }
 
     @Override
@@ -503,11 +683,14 @@ public class Play extends MapState implements Savable, Serializable {
                     } else if (clickAction != -1) {
                         Unit selectedUnit = (Unit) selectedEntity;
                         if (clickAction == CA_MOVE) {
-                            ArrayList<Point> path = getUnitPathToTile(selectedUnit, tileX, tileY, this);
-                            if (path != null && !path.isEmpty()) {
-                                selectedUnit.setPath(path);
-                                selectedUnit.setTargetEntity(null);
-                            }
+                            Point goal = new Point(tileX, tileY);
+                            requestUnitPathToTile(selectedUnit, goal.x, goal.y, SEARCH_JUMP_POINT, PRIORITY_COMMAND, this, (path, tag) -> {
+                                if (path != null && !path.isEmpty()) {
+                                    selectedUnit.setPath(path);
+                                    selectedUnit.setTargetEntity(null);
+                                    selectedUnit.setPathGoal(goal);
+                                }
+                            });
                         } else if (canAttackOnClick() || canDefendOnClick() || canFarmOnClick() || canGatherOnClick())
                             setSelectedUnitTargetToHoverEntity(selectedUnit);
                         else if (hoverEntity.getEntityType() == BUILDING && clickAction == CA_EMPTY_INVENTORY) {
@@ -610,6 +793,78 @@ public class Play extends MapState implements Savable, Serializable {
         return buildingHandler;
     }
 
+    public ChunkGraph getChunkGraph() {
+        if (chunkGraph == null)
+            chunkGraph = new ChunkGraph(this);
+        return chunkGraph;
+    }
+
+    public PathCache getPathCache() {
+        if (pathCache == null)
+            pathCache = new PathCache(this);
+        return pathCache;
+    }
+
+    public FlowFieldCache getFlowFieldCache() {
+        if (flowFieldCache == null)
+            flowFieldCache = new FlowFieldCache(this);
+        return flowFieldCache;
+    }
+
+    public PathRequestQueue getPathRequestQueue() {
+        if (pathRequestQueue == null)
+            pathRequestQueue = new PathRequestQueue(this);
+        return pathRequestQueue;
+    }
+
+    public ReplannerPool getReplannerPool() {
+        if (replannerPool == null)
+            replannerPool = new ReplannerPool(map.getTileData()[0].length, map.getTileData().length);
+        return replannerPool;
+    }
+
+    public ReservationTable getReservationTable() {
+        if (reservationTable == null)
+            reservationTable = new ReservationTable(map.getTileData()[0].length, map.getTileData().length, unitHandler.getUnits());
+        return reservationTable;
+    }
+
+    public OccupancyGrid getOccupancyGrid() {
+        if (occupancyGrid == null)
+            occupancyGrid = new OccupancyGrid(this);
+        return occupancyGrid;
+    }
+
+    public LineOfSight getLineOfSight() {
+        if (lineOfSight == null)
+            lineOfSight = new LineOfSight(this);
+        return lineOfSight;
+    }
+
+    public InfluenceMap getInfluenceMap() {
+        if (influenceMap == null)
+            influenceMap = new InfluenceMap(this);
+        return influenceMap;
+    }
+
+    public VisibilityGrid getVisibilityGrid() {
+        if (visibilityGrid == null)
+            visibilityGrid = new VisibilityGrid(this);
+        return visibilityGrid;
+    }
+
+    public LandmarkTable getLandmarkTable() {
+        if (landmarkTable == null)
+            landmarkTable = new LandmarkTable(this);
+        return landmarkTable;
+    }
+
+    public RegionMap getRegionMap() {
+        if (regionMap == null)
+            regionMap = new RegionMap(this);
+        return regionMap;
+    }
+
     public BuildingSelection getBuildingSelection() {
         return buildingSelection;
     }
@@ -4,6 +4,7 @@ import entities.buildings.*;
 import entities.resources.GoldMine;
 import entities.units.Laborer;
 import entities.units.Unit;
+import gamestates.Debug;
 import gamestates.Play;
 import objects.Map;
 import objects.Player;
@@ -26,6 +27,8 @@ import static pathfinding.AStar.isPointOpen;
 public class BuildingHandler extends CombatEntityHandler implements Serializable {
 
     private ArrayList<Building> buildings = new ArrayList<>();
+    // The building standing on each tile, covering every tile of a building's footprint
+    private transient Building[] tileIndex;
 
     private int id = 0;
 
@@ -51,7 +54,12 @@ public class BuildingHandler extends CombatEntityHandler implements Serializable
     }
 
     public void render(Graphics g, int xOffset, int yOffset) {
+        // Under fog of war, other players' buildings show up once any of their tiles has been seen
+        boolean isFogOfWarShown = Debug.config.get(Debug.DebugToggle.SHOW_FOG_OF_WAR);
+        Player activePlayer = play.getPlayerByID(play.getActivePlayerID());
         for (Building b : buildings) {
+            if (isFogOfWarShown && !play.getVisibilityGrid().isExplored(activePlayer, b))
+                continue;
             g.drawImage(ImageLoader.buildings[b.getSubType()], b.getHitbox().x - xOffset, b.getHitbox().y - yOffset, null);
 
             if (b.getHealth() < b.getMaxHealth())
@@ -77,8 +85,11 @@ public class BuildingHandler extends CombatEntityHandler implements Serializable
             case CASTLE_WALL -> buildings.add(new CastleWall(player, id, x, y, this));
             case CASTLE_TURRET -> {
                 Building wall = getBuildingAt(x, y);
-                if (wall != null)
+                if (wall != null) {
                     buildings.remove(wall);
+                    indexTiles(wall, null);
+                    play.buildingChanged(wall);
+                }
                 buildings.add(new CastleTurret(player, id, x, y, this));
             }
             case VILLAGE -> {
@@ -93,6 +104,9 @@ public class BuildingHandler extends CombatEntityHandler implements Serializable
             case BARRACKS_TIER_2 -> buildings.add(new Barracks(player, id, x, y, 2, this));
             case BARRACKS_TIER_3 -> buildings.add(new Barracks(player, id, x, y, 3, this));
         }
+        indexTiles(buildings.get(buildings.size() - 1), buildings.get(buildings.size() - 1));
+        play.buildingChanged(buildings.get(buildings.size() - 1));
+        play.staticTilesChanged(toTileX(x), toTileY(y), getBuildingTileWidth(buildingType), getBuildingTileHeight(buildingType));
         adjustResources(buildingType);
     }
 
@@ -150,15 +164,68 @@ public class BuildingHandler extends CombatEntityHandler implements Serializable
         }
         b.setActive(false);
         buildings.remove(b);
+        indexTiles(b, null);
+        play.buildingChanged(b);
+        play.staticTilesChanged(toTileX(b.getX()), toTileY(b.getY()), getBuildingTileWidth(b.getSubType()), getBuildingTileHeight(b.getSubType()));
     }
 
     public Building getBuildingAt(int x, int y) {
-        for (Building b : buildings)
-            if (b.getHitbox().contains(x, y))
-                return b;
+        Building b = getBuildingAtTile(Math.floorDiv(x, TILE_SIZE), Math.floorDiv(y - toPixelY(0), TILE_SIZE));
+        if (b != null && b.getHitbox().contains(x, y))
+            return b;
         return null;
     }
 
+    public Building getBuildingAtTile(int tileX, int tileY) {
+        Map map = play.getMap();
+        int width = map.getTileData()[0].length;
+        if (tileX < 0 || tileY < 0 || tileX >= width || tileY >= map.getTileData().length)
+            return null;
+        return getTileIndex()[tileY * width + tileX];
+    }
+
+    public void getBuildingsInTileArea(int tileX, int tileY, int tileWidth, int tileHeight, ArrayList<Building> out) {
+        // Adds every building standing on a tile in the area, once each. A building is added from the first of its
+        // tiles inside the area, which is its top left tile unless the area cuts it off
+        Map map = play.getMap();
+        int width = map.getTileData()[0].length;
+        int firstX = Math.max(0, tileX);
+        int firstY = Math.max(0, tileY);
+        Building[] index = getTileIndex();
+        for (int y = firstY; y < Math.min(map.getTileData().length, tileY + tileHeight); y++)
+            for (int x = firstX; x < Math.min(width, tileX + tileWidth); x++) {
+                Building b = index[y * width + x];
+                if (b != null && x == Math.max(firstX, toTileX(b.getHitbox().x)) && y == Math.max(firstY, toTileY(b.getHitbox().y)))
+                    out.add(b);
+            }
+    }
+
+    private Building[] getTileIndex() {
+        if (tileIndex == null) {
+            tileIndex = new Building[play.getMap().getTileData()[0].length * play.getMap().getTileData().length];
+            for (Building b : buildings)
+                indexTiles(b, b);
+        }
+        return tileIndex;
+    }
+
+    private void indexTiles(Building b, Building value) {
+        // Points every tile under the building at the value, only tiles still pointing at the building are cleared
+        if (tileIndex == null)
+            return;
+        int width = play.getMap().getTileData()[0].length;
+        int height = play.getMap().getTileData().length;
+        Rectangle hitbox = b.getHitbox();
+        int firstX = Math.max(0, Math.floorDiv(hitbox.x, TILE_SIZE));
+        int firstY = Math.max(0, Math.floorDiv(hitbox.y - toPixelY(0), TILE_SIZE));
+        int lastX = Math.min(width - 1, Math.floorDiv(hitbox.x + hitbox.width - 1, TILE_SIZE));
+        int lastY = Math.min(height - 1, Math.floorDiv(hitbox.y - toPixelY(0) + hitbox.height - 1, TILE_SIZE));
+        for (int y = firstY; y <= lastY; y++)
+            for (int x = firstX; x <= lastX; x++)
+                if (value != null || tileIndex[y * width + x] == b)
+                    tileIndex[y * width + x] = value;
+    }
+
     public Point getSpawnTile(Building building) {
         Map map = play.getMap();
         int buildingType = building.getSubType();
@@ -0,0 +1,235 @@
+package handlers;
+
+import entities.buildings.Building;
+import entities.resources.ResourceObject;
+import entities.units.Unit;
+import gamestates.Play;
+import objects.Chunk;
+import objects.Player;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import static entities.resources.ResourceObject.IRON;
+import static main.Game.*;
+
+public class InfluenceMap {
+
+    // Kept for every player:
+    //   threat on each tile, the summed damage of their armed units and turrets that have the tile within sight
+    //   range, which is as far as they go looking for something to attack
+    //   strength in each chunk, the summed max health of their units and buildings standing in it
+    // and for every resource type, how many resource objects are left in each chunk.
+    // Like VisibilityGrid, a unit's share is only moved when they step into another tile, and a building's when it
+    // appears, dies, is replaced or changes range, by taking away what it added before and adding what it adds now.
+    // Ranges are the same circle as Entity.isTargetInRange, reaching out from the tile a unit's middle is in or
+    // from every tile a building covers. A unit or building counts towards the chunk its first tile is in, chunks
+    // being the map's own, which aren't all the same size
+    private Play play;
+    private Chunk[][] chunks;
+    private int width, height, numChunksX;
+    private int[] chunkXOfTile, chunkYOfTile;
+    private int[][] tileThreat;
+    private int[][] chunkStrength;
+    private int[][] chunkResources;
+    private Source[] unitSources = new Source[64];
+    private IdentityHashMap<Building, Source> buildingSources = new IdentityHashMap<>();
+    // For each range, how far either side of the column a tile can be, row by row away from the one reached from
+    private int[][] rowReaches = new int[0][];
+
+    private static class Source {
+        private int player;
+        private int firstX, firstY, lastX, lastY;
+        private int range, damage, strength;
+    }
+
+    public InfluenceMap(Play play) {
+        this.play = play;
+        this.chunks = play.getMap().getChunks();
+        this.width = play.getMap().getTileData()[0].length;
+        this.height = play.getMap().getTileData().length;
+        this.numChunksX = chunks[0].length;
+        int numChunks = numChunksX * chunks.length;
+        int numPlayers = play.getPlayers().size();
+        this.tileThreat = new int[numPlayers][width * height];
+        this.chunkStrength = new int[numPlayers][numChunks];
+        this.chunkResources = new int[IRON + 1][numChunks];
+
+        chunkXOfTile = new int[width];
+        chunkYOfTile = new int[height];
+        for (int chunkX = 0; chunkX < numChunksX; chunkX++) {
+            Chunk c = chunks[0][chunkX];
+            for (int x = c.getxStart(); x < c.getxStart() + c.getTileWdith(); x++)
+                chunkXOfTile[x] = chunkX;
+        }
+        for (int chunkY = 0; chunkY < chunks.length; chunkY++) {
+            Chunk c = chunks[chunkY][0];
+            for (int y = c.getyStart(); y < c.getyStart() + c.getTileHeight(); y++)
+                chunkYOfTile[y] = chunkY;
+        }
+
+        resourcesChanged(0, 0, width, height);
+        for (Building b : play.getBuildingHandler().getBuildings())
+            buildingChanged(b);
+        for (Unit u : play.getUnitHandler().getUnits())
+            unitChanged(u);
+    }
+
+    public void unitChanged(Unit u) {
+        // Moves the unit's share to around the tile they are in now, or takes it away if they are no longer active
+        int id = u.getId();
+        if (id >= unitSources.length)
+            unitSources = Arrays.copyOf(unitSources, Math.max(id + 1, unitSources.length * 2));
+
+        Source source = unitSources[id];
+        if (!u.isActive()) {
+            if (source != null) {
+                add(source, -1);
+                unitSources[id] = null;
+            }
+            return;
+        }
+
+        Rectangle hitbox = u.getHitbox();
+        int tileX = Math.max(0, Math.min(width - 1, Math.floorDiv(hitbox.x + hitbox.width / 2, TILE_SIZE)));
+        int tileY = Math.max(0, Math.min(height - 1, Math.floorDiv(hitbox.y + hitbox.height / 2 - toPixelY(0), TILE_SIZE)));
+        if (source != null && source.firstX == tileX && source.firstY == tileY)
+            return;
+
+        if (source != null)
+            add(source, -1);
+        else
+            source = unitSources[id] = new Source();
+        source.player = getPlayerIndex(u.getPlayer());
+        source.firstX = source.lastX = tileX;
+        source.firstY = source.lastY = tileY;
+        source.range = u.getSightRange();
+        source.damage = u.getDamage();
+        source.strength = u.getMaxHealth();
+        add(source, 1);
+    }
+
+    public void buildingChanged(Building b) {
+        // Called when a building appears, dies, is replaced or changes its range. A building counts for as long as
+        // the building handler still has it standing on its tiles
+        Source source = buildingSources.remove(b);
+        if (source != null)
+            add(source, -1);
+        Rectangle hitbox = b.getHitbox();
+        if (play.getBuildingHandler().getBuildingAt(hitbox.x, hitbox.y) != b)
+            return;
+
+        source = new Source();
+        source.player = getPlayerIndex(b.getPlayer());
+        source.firstX = Math.floorDiv(hitbox.x, TILE_SIZE);
+        source.firstY = Math.floorDiv(hitbox.y - toPixelY(0), TILE_SIZE);
+        source.lastX = Math.floorDiv(hitbox.x + hitbox.width - 1, TILE_SIZE);
+        source.lastY = Math.floorDiv(hitbox.y - toPixelY(0) + hitbox.height - 1, TILE_SIZE);
+        source.range = b.getSightRange();
+        source.damage = b.getDamage();
+        source.strength = b.getMaxHealth();
+        buildingSources.put(b, source);
+        add(source, 1);
+    }
+
+    public void resourcesChanged(int tileX, int tileY, int tileWidth, int tileHeight) {
+        // Recounts the resources in every chunk the area overlaps
+        ResourceObject[][] resourceObjectData = play.getResourceObjectData();
+        int lastChunkY = chunkYOfTile[Math.min(height - 1, tileY + tileHeight - 1)];
+        int lastChunkX = chunkXOfTile[Math.min(width - 1, tileX + tileWidth - 1)];
+        for (int chunkY = chunkYOfTile[Math.max(0, tileY)]; chunkY <= lastChunkY; chunkY++)
+            for (int chunkX = chunkXOfTile[Math.max(0, tileX)]; chunkX <= lastChunkX; chunkX++) {
+                Chunk c = chunks[chunkY][chunkX];
+                int chunk = chunkY * numChunksX + chunkX;
+                for (int[] counts : chunkResources)
+                    counts[chunk] = 0;
+                for (int y = c.getyStart(); y < c.getyStart() + c.getTileHeight(); y++)
+                    for (int x = c.getxStart(); x < c.getxStart() + c.getTileWdith(); x++)
+                        if (resourceObjectData[y][x] != null)
+                            chunkResources[resourceObjectData[y][x].getSubType()][chunk]++;
+            }
+    }
+
+    private void add(Source source, int sign) {
+        // Adds the source's share, or takes it away again when the sign is negative
+        if (source.player < 0)
+            return;
+        chunkStrength[source.player][getChunk(source.firstX, source.firstY)] += sign * source.strength;
+        if (source.damage <= 0)
+            return;
+
+        int[] reaches = getRowReaches(source.range);
+        int[] playerThreat = tileThreat[source.player];
+        int change = sign * source.damage;
+        for (int y = Math.max(0, source.firstY - source.range); y <= Math.min(height - 1, source.lastY + source.range); y++) {
+            int reach = reaches[Math.max(0, Math.max(source.firstY - y, y - source.lastY))];
+            for (int x = Math.max(0, source.firstX - reach); x <= Math.min(width - 1, source.lastX + reach); x++)
+                playerThreat[y * width + x] += change;
+        }
+    }
+
+    private int[] getRowReaches(int range) {
+        if (range >= rowReaches.length)
+            rowReaches = Arrays.copyOf(rowReaches, range + 1);
+        if (rowReaches[range] == null)
+            rowReaches[range] = VisibilityGrid.computeRowReaches(range);
+        return rowReaches[range];
+    }
+
+    private int getChunk(int tileX, int tileY) {
+        return chunkYOfTile[tileY] * numChunksX + chunkXOfTile[tileX];
+    }
+
+    private int getPlayerIndex(Player player) {
+        ArrayList<Player> players = play.getPlayers();
+        for (int i = 0; i < players.size(); i++)
+            if (players.get(i).getPlayerID() == player.getPlayerID())
+                return i;
+        return -1;
+    }
+
+    public int getThreat(Player player, int tileX, int tileY) {
+        int index = getPlayerIndex(player);
+        return index < 0 ? 0 : tileThreat[index][tileY * width + tileX];
+    }
+
+    public int getEnemyThreat(Player player, int tileX, int tileY) {
+        // The summed threat of every other player on the tile
+        int index = getPlayerIndex(player);
+        int threat = 0;
+        for (int i = 0; i < tileThreat.length; i++)
+            if (i != index)
+                threat += tileThreat[i][tileY * width + tileX];
+        return threat;
+    }
+
+    public int getChunkStrength(Player player, int chunkX, int chunkY) {
+        int index = getPlayerIndex(player);
+        return index < 0 ? 0 : chunkStrength[index][chunkY * numChunksX + chunkX];
+    }
+
+    public int getEnemyChunkStrength(Player player, int chunkX, int chunkY) {
+        // The summed strength of every other player in the chunk
+        int index = getPlayerIndex(player);
+        int strength = 0;
+        for (int i = 0; i < chunkStrength.length; i++)
+            if (i != index)
+                strength += chunkStrength[i][chunkY * numChunksX + chunkX];
+        return strength;
+    }
+
+    public boolean isChunkClaimed(int chunkX, int chunkY) {
+        // Whether any player has a unit or building standing in the chunk
+        for (int[] strength : chunkStrength)
+            if (strength[chunkY * numChunksX + chunkX] > 0)
+                return true;
+        return false;
+    }
+
+    public int getChunkResources(int resourceType, int chunkX, int chunkY) {
+        return chunkResources[resourceType][chunkY * numChunksX + chunkX];
+    }
+
+}
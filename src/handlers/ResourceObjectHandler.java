@@ -6,6 +6,7 @@ import gamestates.Play;
 import objects.Chunk;
 import objects.Player;
 import objects.Tile;
+import pathfinding.Path;
 import utils.ImageLoader;
 import utils.OpenSimplex2;
 
@@ -332,6 +333,7 @@ public class ResourceObjectHandler implements Serializable {
         int laborerTileY = toTileY(laborer.getHitbox().y);
 
         play.getResourceObjectData()[roTileY][roTileX] = null;
+        play.staticTilesChanged(roTileX, roTileY, 1, 1);
 
         if (resourceType == TREE)
             updateTreeSprites(roTileX, roTileY);
@@ -363,7 +365,7 @@ public class ResourceObjectHandler implements Serializable {
                                 laborer.setTargetEntity(currRO);
                                 return;
                             }
-                            ArrayList<Point> path = getUnitPathToNearestAdjacentTile(laborer, toTileX(currRO.getX()), toTileY(currRO.getY()), play);
+                            Path path = getUnitPathToNearestAdjacentTile(laborer, toTileX(currRO.getX()), toTileY(currRO.getY()), play);
                             if (path != null) {
                                 laborer.setPath(path);
                                 laborer.setTargetEntity(currRO);
@@ -50,8 +50,12 @@ public class SaveFileHandler {
                 }
             });
             for (File file : files)
-                if (file.getPath().endsWith(LoadSave.gameFileExtension))
-                    games.add(LoadSave.loadGame(file));
+                if (file.getPath().endsWith(LoadSave.gameFileExtension)) {
+                    // Games saved by an older version that no longer load are left out
+                    Play play = LoadSave.loadGame(file);
+                    if (play != null)
+                        games.add(play);
+                }
         }
     }
 
@@ -8,6 +8,8 @@ import gamestates.Debug;
 import gamestates.Play;
 import entities.Entity;
 import objects.Player;
+import pathfinding.Path;
+import pathfinding.PathRequest;
 
 import java.awt.*;
 import java.io.Serializable;
@@ -15,16 +17,21 @@ import java.util.*;
 
 import static entities.units.Brute.ATTACKING;
 import static entities.units.Unit.*;
+import static handlers.VisibilityGrid.BUILDING_SIGHT_RANGE;
 import static main.Game.*;
-import static pathfinding.AStar.getUnitPathToNearestAdjacentTile;
+import static pathfinding.AStar.*;
+import static pathfinding.PathRequest.PRIORITY_AUTOMATIC;
 
 public class UnitHandler extends CombatEntityHandler implements Serializable {
 
     private static final Font DEBUG_UNIT_ID_FONT = new Font("Monospaced", Font.BOLD, 14);
     private static final int NUM_MAX_STARTING_UNITS = 3;
+    // How many of the nearest targets in sight an idle unit searches towards at once
+    private static final int MAX_CHASED_TARGETS = 4;
 
     private ArrayList<Unit> units = new ArrayList<>();
     private ArrayList<Unit> deadUnits = new ArrayList<>();
+    private transient UnitSpatialHash spatialHash;
 
     private int id = 0;
 
@@ -60,12 +67,12 @@ public class UnitHandler extends CombatEntityHandler implements Serializable {
             }
 
             // Check if target has moved out of range
-            if (unitType != LABORER && (u.getState() == WALKING || u.getState() == ATTACKING) && target != null) {
+            if (unitType != LABORER && (u.getState() == WALKING || u.getState() == ATTACKING) && target != null && !u.hasPendingPathRequest()) {
                 adjustPathIfTargetMovedOutOfActionRange(u);
             }
 
             // Auto-attack if idle and no target
-            if (unitType != LABORER && u.getState() == IDLE && target == null) {
+            if (unitType != LABORER && u.getState() == IDLE && target == null && !u.hasPendingPathRequest()) {
                 findEnemyToAttack(u);
             }
 
@@ -80,8 +87,10 @@ public class UnitHandler extends CombatEntityHandler implements Serializable {
     }
 
     public void render(Graphics g, int xOffset, int yOffset) {
+        boolean isFogOfWarShown = Debug.config.get(Debug.DebugToggle.SHOW_FOG_OF_WAR);
+        Player activePlayer = play.getPlayerByID(play.getActivePlayerID());
         for (Unit u : units) {
-            if (u.isActive()) {
+            if (u.isActive() && (!isFogOfWarShown || play.getVisibilityGrid().isVisible(activePlayer, u))) {
                 int dir = u.getDirection();
                 if (dir == UP_LEFT || dir == DOWN_LEFT)
                     dir = LEFT;
@@ -110,7 +119,7 @@ public class UnitHandler extends CombatEntityHandler implements Serializable {
 
     private void resetPathToFirstTile(Unit u) {
         if (u.getPath() != null && !u.getPath().isEmpty())
-            u.setPath(new ArrayList<>(Arrays.asList(u.getPath().get(0))));
+            u.truncatePath(1);
         else
             u.setPath(null);
     }
@@ -169,13 +178,15 @@ public class UnitHandler extends CombatEntityHandler implements Serializable {
             case STONE_THROWER -> units.add(new StoneThrower(player, toPixelX(spawn.x), toPixelY(spawn.y), id++, this));
         }
         player.setPopulation(player.getPopulation() + 1);
+        play.unitTilesChanged(units.get(units.size() - 1));
     }
 
     private void drawPath(Unit u, Graphics g, int xOffset, int yOffset) {
         if (u.getPath() != null && !u.getPath().isEmpty()) {
             g.setColor(new Color(255, 0, 255, 100));
-            for (Point p : u.getPath()) {
-                g.fillRect(toPixelX(p.x) - xOffset, toPixelY(p.y) - yOffset, TILE_SIZE, TILE_SIZE);
+            Path path = u.getPath();
+            for (int i = 0; i < path.size(); i++) {
+                g.fillRect(toPixelX(path.getX(i)) - xOffset, toPixelY(path.getY(i)) - yOffset, TILE_SIZE, TILE_SIZE);
             }
         }
     }
@@ -206,7 +217,7 @@ public class UnitHandler extends CombatEntityHandler implements Serializable {
     }
 
     private void adjustPathIfTargetMovedOutOfActionRange(Unit u) {
-        ArrayList<Point> currPath = u.getPath();
+        Path currPath = u.getPath();
         Entity target = u.getTargetEntity();
         if (target.getEntityType() != UNIT)
             return;
@@ -215,47 +226,106 @@ public class UnitHandler extends CombatEntityHandler implements Serializable {
         Point unitTile;
 
         if (currPath != null && !currPath.isEmpty())
-            unitTile = u.getPath().get(u.getPath().size() - 1);
+            unitTile = currPath.getLast();
         else
             unitTile = new Point(toTileX(u.getHitbox().x), toTileY(u.getHitbox().y));
 
         if (Math.abs(targetTile.x - unitTile.x) > u.getActionRange() || Math.abs(targetTile.y - unitTile.y) > u.getActionRange()) {
-            ArrayList<Point> newPath = getUnitPathToNearestAdjacentTile(u, targetTile.x, targetTile.y, play);
-
-            if (newPath == null && currPath != null && !currPath.isEmpty()) {
-                newPath = new ArrayList<>();
-                newPath.add(currPath.get(0));
-            }
-            u.setPath(newPath);
+            // The unit keeps its next tile until the new path arrives, and keeps only that if there is no new path
+            requestUnitPathToNearestAdjacentTile(u, targetTile.x, targetTile.y, PRIORITY_AUTOMATIC, play, (newPath, tag) -> {
+                if (newPath != null && u.getTargetEntity() == target)
+                    u.setPath(newPath);
+            });
         }
     }
 
     private void findEnemyToAttack(Unit attacker) {
-        ArrayList<CombatEntity> targets = new ArrayList<>();
-        targets.addAll(units);
-        targets.addAll(play.getBuildingHandler().getBuildings());
-        for (CombatEntity target : targets) {
-            if (target.isActive() && target.getPlayer().getPlayerID() != attacker.getPlayer().getPlayerID() && attacker.isTargetInRange(target, attacker.getSightRange())) {
-                if (attacker.isTargetInRange(target, attacker.getActionRange()) && attacker.isLineOfSightOpen(target)) {
-                    attacker.setTargetEntity(target);
-                    return;
-                }
-                Point targetTile = getTargetTile(target);
-                ArrayList<Point> path = getUnitPathToNearestAdjacentTile(attacker, targetTile.x, targetTile.y, play);
-                if (path != null) {
-                    attacker.setPath(path);
-                    attacker.setTargetEntity(target);
-                    return;
-                }
+        // The nearest target in range is taken straight away, otherwise a single search is queued towards the nearest
+        // few targets in sight that can be walked to
+        ArrayList<CombatEntity> targets = getEnemiesInRange(attacker, attacker.getSightRange());
+        for (CombatEntity target : targets)
+            if (attacker.isTargetInRange(target, attacker.getActionRange()) && attacker.isLineOfSightOpen(target)) {
+                attacker.setTargetEntity(target);
+                return;
             }
+
+        ArrayList<CombatEntity> pathTargets = new ArrayList<>();
+        PathRequest request = newUnitPathRequest(attacker, PRIORITY_AUTOMATIC, (path, tag) -> {
+            // A search cut off before reaching any target is not worth chasing
+            if (path == null || tag < 0 || attacker.getTargetEntity() != null)
+                return;
+            CombatEntity target = pathTargets.get(tag);
+            if (target.isActive()) {
+                attacker.setPath(path);
+                attacker.setTargetEntity(target);
+            }
+        });
+
+        for (CombatEntity target : targets) {
+            if (pathTargets.size() >= MAX_CHASED_TARGETS)
+                break;
+            // Targets with no reachable tile next to them add no goals and don't count towards the limit
+            int numGoals = request.getGoalCount();
+            Point targetTile = getTargetTile(target);
+            addAdjacentGoals(request, targetTile.x, targetTile.y, pathTargets.size(), play);
+            if (request.getGoalCount() > numGoals)
+                pathTargets.add(target);
         }
+
+        if (request.getGoalCount() > 0)
+            play.getPathRequestQueue().submit(request);
+    }
+
+    public ArrayList<CombatEntity> getEnemiesInRange(CombatEntity seeker, int tileRange) {
+        return getEnemiesInRange(seeker, tileRange, true);
+    }
+
+    public ArrayList<CombatEntity> getEnemiesInRange(CombatEntity seeker, int tileRange, boolean includeBuildings) {
+        // Active units, and buildings if asked for, of every other player that the seeker's player can see and that
+        // are within the tile range of the seeker, nearest first. Only the part of the map the range covers is
+        // looked at, the same range check as isTargetInRange is then applied to each entity found there. Ranges
+        // reach out from the middle of the seeker's first tile, as they do in isTargetInRange
+        ArrayList<CombatEntity> enemies = new ArrayList<>();
+        Rectangle bounds = seeker.getHitbox();
+        int centerX = bounds.x + TILE_SIZE / 2;
+        int centerY = bounds.y + TILE_SIZE / 2;
+        long playerID = seeker.getPlayer().getPlayerID();
+
+        // Unit hitbox centers are their tile middles, so any unit in range has its center within the range plus half a tile
+        ArrayList<Unit> nearbyUnits = new ArrayList<>();
+        getSpatialHash().getUnitsInRadius(centerX, centerY, (tileRange + 1) * TILE_SIZE, nearbyUnits);
+        for (Unit u : nearbyUnits)
+            if (u.isActive() && u.getPlayer().getPlayerID() != playerID && isSeen(seeker, u) && seeker.isTargetInRange(u, tileRange))
+                enemies.add(u);
+
+        if (includeBuildings) {
+            ArrayList<Building> nearbyBuildings = new ArrayList<>();
+            int tileX = toTileX(bounds.x);
+            int tileY = toTileY(bounds.y);
+            play.getBuildingHandler().getBuildingsInTileArea(tileX - tileRange - 1, tileY - tileRange - 1, tileRange * 2 + 3, tileRange * 2 + 3, nearbyBuildings);
+            for (Building b : nearbyBuildings)
+                if (b.isActive() && b.getPlayer().getPlayerID() != playerID && isSeen(seeker, b) && seeker.isTargetInRange(b, tileRange))
+                    enemies.add(b);
+        }
+
+        enemies.sort(Comparator.comparingDouble(e -> Point.distanceSq(centerX, centerY, e.getHitbox().getCenterX(), e.getHitbox().getCenterY())));
+        return enemies;
+    }
+
+    public boolean isSeen(CombatEntity seeker, CombatEntity target) {
+        // Whether the seeker's player can see the target, the check every automatic target has to pass. Whatever
+        // the seeker's own sight reaches is measured with isTargetInRange, from the same point as every range
+        // check, since the visibility grid rounds both ends to a tile and would disagree near tile edges. Past
+        // that the grid decides, with what the rest of the player's units and buildings see
+        int sightRange = seeker instanceof Building ? Math.max(BUILDING_SIGHT_RANGE, seeker.getSightRange()) : seeker.getSightRange();
+        return seeker.isTargetInRange(target, sightRange) || play.getVisibilityGrid().isVisible(seeker.getPlayer(), target);
     }
 
     private Point getTargetTile(Entity target) {
         // Returns the tile the target is currently in, or the tile they are moving into if their path is not empty
         Point targetTile = null;
         if (target instanceof Unit) {
-            ArrayList<Point> targetPath = ((Unit) target).getPath();
+            Path targetPath = ((Unit) target).getPath();
             if (targetPath != null && !targetPath.isEmpty())
                 targetTile = targetPath.get(0);
             else
@@ -283,36 +353,34 @@ public class UnitHandler extends CombatEntityHandler implements Serializable {
 
     public void killUnit(Unit u) {
         u.setActive(false);
+        u.setFlowField(null);
+        play.getReplannerPool().release(u);
+        play.getReservationTable().release(u);
         deadUnits.add(u);
     }
 
     public Unit getUnitAtCoord(int x, int y) {
-        for (Unit u : units)
-            if (u.isActive() && u.getHitbox().contains(x, y))
-                return u;
-        return null;
+        return getSpatialHash().getUnitAtPoint(x, y);
     }
 
     public Unit getUnitAtTile(int tileX, int tileY) {
-        Rectangle tileBounds = new Rectangle(toPixelX(tileX), toPixelY(tileY), TILE_SIZE, TILE_SIZE);
-        for (Unit u : units)
-            if (u.isActive() && u.getHitbox().intersects(tileBounds))
-                return u;
-        return null;
+        return getSpatialHash().getUnitAtTile(tileX, tileY);
+    }
+
+    public void unitTilesChanged(Unit u) {
+        if (spatialHash != null)
+            spatialHash.update(u);
+    }
+
+    public UnitSpatialHash getSpatialHash() {
+        if (spatialHash == null)
+            spatialHash = new UnitSpatialHash(play.getMap().getTileData()[0].length, play.getMap().getTileData().length, units);
+        return spatialHash;
     }
 
     public boolean isTileReserved(int tileX, int tileY, Unit excludedUnit) {
-        Point p = new Point(tileX, tileY);
-        for (Unit unit : units) {
-            if (excludedUnit != null && excludedUnit.getId() == unit.getId())
-                continue;
-
-            ArrayList<Point> path = unit.getPath();
-            if (unit.isActive() && path != null && !path.isEmpty())
-                if (path.get(0).equals(p))
-                    return true;
-        }
-        return false;
+        // Whether another unit's next step is onto the tile
+        return play.getReservationTable().isTileReserved(tileX, tileY, excludedUnit);
     }
 
     public ArrayList<Unit> getUnits() {
@@ -0,0 +1,150 @@
+package handlers;
+
+import entities.units.Unit;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static main.Game.*;
+
+public class UnitSpatialHash {
+
+    private static final int NONE = -1;
+
+    // Active units bucketed by the tile the top left corner of their hitbox is in. Unit hitboxes are a tile wide, so
+    // a unit overlapping a tile is always in that tile's bucket or the buckets up and to the left of it. Buckets are
+    // linked lists threaded through arrays indexed by unit id, so moving a unit between buckets never allocates
+    private int width, height;
+    private int[] bucketHeads;
+    private Unit[] units = new Unit[64];
+    private int[] buckets = new int[64];
+    private int[] next = new int[64];
+    private int[] previous = new int[64];
+
+    public UnitSpatialHash(int width, int height, ArrayList<Unit> units) {
+        this.width = width;
+        this.height = height;
+        this.bucketHeads = new int[width * height];
+        Arrays.fill(bucketHeads, NONE);
+        Arrays.fill(buckets, NONE);
+        for (Unit u : units)
+            update(u);
+    }
+
+    public void update(Unit u) {
+        // Moves the unit to the bucket they are in now, or takes them out if they are no longer active
+        int id = u.getId();
+        if (id >= units.length)
+            grow(id + 1);
+
+        Rectangle hitbox = u.getHitbox();
+        int bucket = u.isActive() ? getBucket(getTileX(hitbox.x), getTileY(hitbox.y)) : NONE;
+        if (bucket == buckets[id])
+            return;
+        if (buckets[id] != NONE)
+            remove(id);
+        if (bucket != NONE) {
+            units[id] = u;
+            buckets[id] = bucket;
+            previous[id] = NONE;
+            next[id] = bucketHeads[bucket];
+            if (next[id] != NONE)
+                previous[next[id]] = id;
+            bucketHeads[bucket] = id;
+        }
+    }
+
+    private void remove(int id) {
+        if (previous[id] != NONE)
+            next[previous[id]] = next[id];
+        else
+            bucketHeads[buckets[id]] = next[id];
+        if (next[id] != NONE)
+            previous[next[id]] = previous[id];
+        units[id] = null;
+        buckets[id] = NONE;
+    }
+
+    private void grow(int minLength) {
+        int oldLength = units.length;
+        int newLength = Math.max(minLength, oldLength * 2);
+        units = Arrays.copyOf(units, newLength);
+        buckets = Arrays.copyOf(buckets, newLength);
+        next = Arrays.copyOf(next, newLength);
+        previous = Arrays.copyOf(previous, newLength);
+        Arrays.fill(buckets, oldLength, newLength, NONE);
+    }
+
+    public Unit getUnitAtPoint(int x, int y) {
+        // The unit whose hitbox contains the pixel, the earliest spawned one if there are several
+        int tileX = getTileX(x);
+        int tileY = getTileY(y);
+        Unit found = null;
+        for (int bucketY = tileY - 1; bucketY <= tileY; bucketY++)
+            for (int bucketX = tileX - 1; bucketX <= tileX; bucketX++)
+                for (int id = getHead(bucketX, bucketY); id != NONE; id = next[id])
+                    if (units[id].getHitbox().contains(x, y) && (found == null || id < found.getId()))
+                        found = units[id];
+        return found;
+    }
+
+    public Unit getUnitAtTile(int tileX, int tileY) {
+        // The unit whose hitbox overlaps the tile, the earliest spawned one if there are several
+        int tilePixelX = toPixelX(tileX);
+        int tilePixelY = toPixelY(tileY);
+        Unit found = null;
+        for (int bucketY = tileY - 1; bucketY <= tileY; bucketY++)
+            for (int bucketX = tileX - 1; bucketX <= tileX; bucketX++)
+                for (int id = getHead(bucketX, bucketY); id != NONE; id = next[id]) {
+                    Rectangle hitbox = units[id].getHitbox();
+                    if (hitbox.x < tilePixelX + TILE_SIZE && hitbox.y < tilePixelY + TILE_SIZE
+                            && tilePixelX < hitbox.x + hitbox.width && tilePixelY < hitbox.y + hitbox.height
+                            && (found == null || id < found.getId()))
+                        found = units[id];
+                }
+        return found;
+    }
+
+    public void getUnitsInRect(Rectangle bounds, ArrayList<Unit> out) {
+        // Adds every unit whose hitbox overlaps the pixel rectangle
+        for (int bucketY = getTileY(bounds.y) - 1; bucketY <= getTileY(bounds.y + bounds.height - 1); bucketY++)
+            for (int bucketX = getTileX(bounds.x) - 1; bucketX <= getTileX(bounds.x + bounds.width - 1); bucketX++)
+                for (int id = getHead(bucketX, bucketY); id != NONE; id = next[id])
+                    if (units[id].getHitbox().intersects(bounds))
+                        out.add(units[id]);
+    }
+
+    public void getUnitsInRadius(int x, int y, int radius, ArrayList<Unit> out) {
+        // Adds every unit whose hitbox center is within the radius of the pixel, in pixels
+        for (int bucketY = getTileY(y - radius) - 1; bucketY <= getTileY(y + radius); bucketY++)
+            for (int bucketX = getTileX(x - radius) - 1; bucketX <= getTileX(x + radius); bucketX++)
+                for (int id = getHead(bucketX, bucketY); id != NONE; id = next[id]) {
+                    Rectangle hitbox = units[id].getHitbox();
+                    double dx = hitbox.getCenterX() - x;
+                    double dy = hitbox.getCenterY() - y;
+                    if (dx * dx + dy * dy <= (double) radius * radius)
+                        out.add(units[id]);
+                }
+    }
+
+    private int getHead(int tileX, int tileY) {
+        int bucket = getBucket(tileX, tileY);
+        return bucket == NONE ? NONE : bucketHeads[bucket];
+    }
+
+    private int getBucket(int tileX, int tileY) {
+        if (tileX < 0 || tileY < 0 || tileX >= width || tileY >= height)
+            return NONE;
+        return tileY * width + tileX;
+    }
+
+    private int getTileX(int pixelX) {
+        return Math.floorDiv(pixelX, TILE_SIZE);
+    }
+
+    private int getTileY(int pixelY) {
+        return Math.floorDiv(pixelY - toPixelY(0), TILE_SIZE);
+    }
+
+}
@@ -0,0 +1,207 @@
+package handlers;
+
+import entities.Entity;
+import entities.buildings.Building;
+import entities.units.Unit;
+import gamestates.Play;
+import objects.Player;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import static main.Game.*;
+
+public class VisibilityGrid {
+
+    // Buildings without a sight range of their own, which is all but occupied turrets, still see this far
+    public static final int BUILDING_SIGHT_RANGE = 3;
+
+    // For every player, how many of their units and buildings see each tile. A tile is visible while its count is
+    // above zero and explored once it has ever been. Counts only change when a unit steps into another tile, or a
+    // building appears, dies or changes its sight range, by taking away what the source saw before and adding
+    // what it sees now. A unit sees from the tile their hitbox's middle is in, a building from every tile it
+    // covers, and a tile is seen when its middle is less than the sight range and a half tiles from the middle of
+    // a tile the source sees from, the same circle Entity.isTargetInRange uses
+    private Play play;
+    private int width, height;
+    private int[][] counts;
+    private long[][] explored;
+    private Source[] unitSources = new Source[64];
+    private IdentityHashMap<Building, Source> buildingSources = new IdentityHashMap<>();
+    // For each sight range, how far either side of the column a tile can be, row by row away from the one seen from
+    private int[][] rowReaches = new int[0][];
+
+    private static class Source {
+        private int player;
+        private int firstX, firstY, lastX, lastY;
+        private int sightRange;
+    }
+
+    public VisibilityGrid(Play play) {
+        this.play = play;
+        this.width = play.getMap().getTileData()[0].length;
+        this.height = play.getMap().getTileData().length;
+        int numPlayers = play.getPlayers().size();
+        this.counts = new int[numPlayers][width * height];
+        this.explored = new long[numPlayers][(width * height + 63) / 64];
+
+        for (Building b : play.getBuildingHandler().getBuildings())
+            buildingChanged(b);
+        for (Unit u : play.getUnitHandler().getUnits())
+            unitChanged(u);
+    }
+
+    public void unitChanged(Unit u) {
+        // Moves what the unit sees to around the tile they are in now, or takes it away if they are no longer active
+        int id = u.getId();
+        if (id >= unitSources.length)
+            unitSources = Arrays.copyOf(unitSources, Math.max(id + 1, unitSources.length * 2));
+
+        Source source = unitSources[id];
+        if (!u.isActive()) {
+            if (source != null) {
+                stamp(source, -1);
+                unitSources[id] = null;
+            }
+            return;
+        }
+
+        Rectangle hitbox = u.getHitbox();
+        int tileX = Math.floorDiv(hitbox.x + hitbox.width / 2, TILE_SIZE);
+        int tileY = Math.floorDiv(hitbox.y + hitbox.height / 2 - toPixelY(0), TILE_SIZE);
+        if (source != null && source.firstX == tileX && source.firstY == tileY && source.sightRange == u.getSightRange())
+            return;
+
+        if (source != null)
+            stamp(source, -1);
+        else
+            source = unitSources[id] = new Source();
+        source.player = getPlayerIndex(u.getPlayer());
+        source.firstX = source.lastX = tileX;
+        source.firstY = source.lastY = tileY;
+        source.sightRange = u.getSightRange();
+        stamp(source, 1);
+    }
+
+    public void buildingChanged(Building b) {
+        // Called when a building appears, dies, is replaced or changes its sight range. A building sees for as long
+        // as the building handler still has it standing on its tiles
+        Source source = buildingSources.remove(b);
+        if (source != null)
+            stamp(source, -1);
+        Rectangle hitbox = b.getHitbox();
+        if (play.getBuildingHandler().getBuildingAt(hitbox.x, hitbox.y) != b)
+            return;
+
+        source = new Source();
+        source.player = getPlayerIndex(b.getPlayer());
+        source.firstX = Math.floorDiv(hitbox.x, TILE_SIZE);
+        source.firstY = Math.floorDiv(hitbox.y - toPixelY(0), TILE_SIZE);
+        source.lastX = Math.floorDiv(hitbox.x + hitbox.width - 1, TILE_SIZE);
+        source.lastY = Math.floorDiv(hitbox.y - toPixelY(0) + hitbox.height - 1, TILE_SIZE);
+        source.sightRange = Math.max(BUILDING_SIGHT_RANGE, b.getSightRange());
+        buildingSources.put(b, source);
+        stamp(source, 1);
+    }
+
+    private void stamp(Source source, int change) {
+        // Adds the change to every tile the source sees, row by row
+        if (source.player < 0)
+            return;
+        int[] reaches = getRowReaches(source.sightRange);
+        int[] playerCounts = counts[source.player];
+        long[] playerExplored = explored[source.player];
+        for (int y = Math.max(0, source.firstY - source.sightRange); y <= Math.min(height - 1, source.lastY + source.sightRange); y++) {
+            int rowsAway = Math.max(0, Math.max(source.firstY - y, y - source.lastY));
+            int reach = reaches[rowsAway];
+            for (int x = Math.max(0, source.firstX - reach); x <= Math.min(width - 1, source.lastX + reach); x++) {
+                int tile = y * width + x;
+                playerCounts[tile] += change;
+                if (change > 0)
+                    playerExplored[tile >> 6] |= 1L << tile;
+            }
+        }
+    }
+
+    private int[] getRowReaches(int sightRange) {
+        if (sightRange >= rowReaches.length)
+            rowReaches = Arrays.copyOf(rowReaches, sightRange + 1);
+        if (rowReaches[sightRange] == null)
+            rowReaches[sightRange] = computeRowReaches(sightRange);
+        return rowReaches[sightRange];
+    }
+
+    static int[] computeRowReaches(int range) {
+        // A tile dx columns and dy rows away is in range when 4 * (dx * dx + dy * dy) < (2 * range + 1)^2
+        int[] reaches = new int[range + 1];
+        int diameter = 2 * range + 1;
+        for (int dy = 0; dy <= range; dy++) {
+            int dx = 0;
+            while (4 * ((dx + 1) * (dx + 1) + dy * dy) < diameter * diameter)
+                dx++;
+            reaches[dy] = dx;
+        }
+        return reaches;
+    }
+
+    private int getPlayerIndex(Player player) {
+        ArrayList<Player> players = play.getPlayers();
+        for (int i = 0; i < players.size(); i++)
+            if (players.get(i).getPlayerID() == player.getPlayerID())
+                return i;
+        return -1;
+    }
+
+    public boolean isTileVisible(Player player, int tileX, int tileY) {
+        int index = getPlayerIndex(player);
+        return index >= 0 && tileX >= 0 && tileY >= 0 && tileX < width && tileY < height && counts[index][tileY * width + tileX] > 0;
+    }
+
+    public boolean isTileExplored(Player player, int tileX, int tileY) {
+        int index = getPlayerIndex(player);
+        if (index < 0 || tileX < 0 || tileY < 0 || tileX >= width || tileY >= height)
+            return false;
+        int tile = tileY * width + tileX;
+        return (explored[index][tile >> 6] & (1L << tile)) != 0;
+    }
+
+    public boolean isVisible(Player player, Entity e) {
+        // Whether the player sees the entity. A player always sees their own, units are seen on the tile their
+        // middle is in, and buildings on any tile they cover
+        if (e.getPlayer().getPlayerID() == player.getPlayerID())
+            return true;
+        int index = getPlayerIndex(player);
+        if (index < 0)
+            return false;
+
+        Rectangle hitbox = e.getHitbox();
+        if (e instanceof Unit)
+            return isTileVisible(player, Math.floorDiv(hitbox.x + hitbox.width / 2, TILE_SIZE), Math.floorDiv(hitbox.y + hitbox.height / 2 - toPixelY(0), TILE_SIZE));
+        return isAreaSeen(index, hitbox, false);
+    }
+
+    public boolean isExplored(Player player, Building b) {
+        // Whether the player has ever seen any tile under the building
+        if (b.getPlayer().getPlayerID() == player.getPlayerID())
+            return true;
+        int index = getPlayerIndex(player);
+        return index >= 0 && isAreaSeen(index, b.getHitbox(), true);
+    }
+
+    private boolean isAreaSeen(int playerIndex, Rectangle hitbox, boolean isEverSeen) {
+        int firstX = Math.max(0, Math.floorDiv(hitbox.x, TILE_SIZE));
+        int firstY = Math.max(0, Math.floorDiv(hitbox.y - toPixelY(0), TILE_SIZE));
+        int lastX = Math.min(width - 1, Math.floorDiv(hitbox.x + hitbox.width - 1, TILE_SIZE));
+        int lastY = Math.min(height - 1, Math.floorDiv(hitbox.y - toPixelY(0) + hitbox.height - 1, TILE_SIZE));
+        for (int y = firstY; y <= lastY; y++)
+            for (int x = firstX; x <= lastX; x++) {
+                int tile = y * width + x;
+                if (isEverSeen ? (explored[playerIndex][tile >> 6] & (1L << tile)) != 0 : counts[playerIndex][tile] > 0)
+                    return true;
+            }
+        return false;
+    }
+
+}
@@ -5,6 +5,7 @@ import gamestates.*;
 import handlers.SaveFileHandler;
 import handlers.TileHandler;
 import objects.Map;
+import pathfinding.BatchPathSolver;
 import ui.MiniMap;
 import ui.bars.ActionBar;
 import ui.bars.GameStatBar;
@@ -168,6 +169,12 @@ public class Game extends JFrame implements Runnable {
             play.setMiniMap(new MiniMap(play, play.getMap().getTileData()));
         if (play.getGameStatBar() == null)
             play.setGameStatBar(new GameStatBar(play));
+        // The landmark table isn't saved, a loaded game builds it before its first tick instead of during it
+        play.getLandmarkTable();
+        // Read whenever a game is started or loaded, toggling it mid-game takes effect the next time. Workers get
+        // every core but one, which is left to the rest of the game
+        play.getPathRequestQueue().setBatchSolver(Debug.config.get(Debug.DebugToggle.PARALLEL_PATH_SOLVING)
+                ? new BatchPathSolver(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) : null);
         this.play = play;
         GameStates.setGameState(GameStates.PLAY);
     }
@@ -1,225 +1,258 @@
-package pathfinding;
-
-import entities.units.Unit;
-import gamestates.Play;
-
-import java.awt.*;
-import java.util.*;
-
-import static main.Game.*;
-import static main.Game.toTileY;
-import static objects.Tile.WATER_GRASS;
-import static objects.Tile.WATER_SAND;
-
-public class AStar {
-
-    private static PriorityQueue<Node> openList;
-    private static HashSet<Point> closedList;
-    private static HashMap<Point, Node> openMap;
-
-    public static ArrayList<Point> pathFind(Point start, Point goal, Play play) {
-        openList = new PriorityQueue<>(Comparator.comparingDouble(Node::getfCost));
-        closedList = new HashSet<>();
-        openMap = new HashMap<>();
-
-        Node current = new Node(start);
-        openList.add(current);
-        openMap.put(start, current);
-
-        while (!openList.isEmpty()) {
-            current = openList.poll();
-            openMap.remove(current.getPoint());
-            closedList.add(current.getPoint());
-
-            if (current.getPoint().equals(goal)) {
-                break;
-            }
-
-            ArrayList<Point> neighbors = getNeighbors(current.getPoint(), play);
-            for (Point point : neighbors) {
-                double gCost = current.getgCost() + getDistance(point, current.getPoint());
-                double hCost = getDistance(point, goal);
-
-                if (closedList.contains(point)) {
-                    continue;
-                }
-
-                if (openMap.containsKey(point)) {
-                    Node node = openMap.get(point);
-                    if (gCost < node.getgCost()) {
-                        openList.remove(node);
-                        node.setgCost(gCost);
-                        node.setfCost(gCost + hCost);
-                        node.setParent(current);
-                        openList.add(node);
-                        openMap.put(point, node);
-                    }
-                } else {
-                    Node newNode = new Node(point, current, gCost, hCost);
-                    openList.add(newNode);
-                    openMap.put(point, newNode);
-                }
-            }
-        }
-
-        if (!current.getPoint().equals(goal)) {
-            return null;
-        }
-
-        ArrayList<Point> path = new ArrayList<>();
-        while (!current.getPoint().equals(start)) {
-            path.add(current.getPoint());
-            current = current.getParent();
-        }
-
-        return reverse(path);
-    }
-
-    private static ArrayList<Point> getNeighbors(Point parent, Play play) {
-        ArrayList<Point> neighbors = new ArrayList<>();
-        int gridWidth = play.getMap().getTileData()[0].length;
-        int gridHeight = play.getMap().getTileData().length;
-
-        boolean isUpOpen = false, isRightOpen = false, isDownOpen = false, isLeftOpen = false;
-
-        // Cardinal Directions (Up, Right, Down, Left)
-        if (parent.y > 0) {
-            Point above = new Point(parent.x, parent.y - 1);
-            isUpOpen = isPointOpen(above, play);
-            if (isUpOpen) neighbors.add(above);
-        }
-
-        if (parent.x < gridWidth - 1) {
-            Point right = new Point(parent.x + 1, parent.y);
-            isRightOpen = isPointOpen(right, play);
-            if (isRightOpen) neighbors.add(right);
-        }
-
-        if (parent.y < gridHeight - 1) {
-            Point below = new Point(parent.x, parent.y + 1);
-            isDownOpen = isPointOpen(below, play);
-            if (isDownOpen) neighbors.add(below);
-        }
-
-        if (parent.x > 0) {
-            Point left = new Point(parent.x - 1, parent.y);
-            isLeftOpen = isPointOpen(left, play);
-            if (isLeftOpen) neighbors.add(left);
-        }
-
-        // Diagonal Directions (Top-left, Top-right, Bottom-left, Bottom-right)
-        if (parent.y > 0 && parent.x > 0) {
-            Point topLeft = new Point(parent.x - 1, parent.y - 1);
-            if (isPointOpen(topLeft, play) && (isUpOpen || isLeftOpen))
-                neighbors.add(topLeft);
-        }
-
-        if (parent.y > 0 && parent.x < gridWidth - 1) {
-            Point topRight = new Point(parent.x + 1, parent.y - 1);
-            if (isPointOpen(topRight, play) && (isUpOpen || isRightOpen))
-                neighbors.add(topRight);
-        }
-
-        if (parent.y < gridHeight - 1 && parent.x > 0) {
-            Point bottomLeft = new Point(parent.x - 1, parent.y + 1);
-            if (isPointOpen(bottomLeft, play) && (isDownOpen || isLeftOpen))
-                neighbors.add(bottomLeft);
-        }
-
-        if (parent.y < gridHeight - 1 && parent.x < gridWidth - 1) {
-            Point bottomRight = new Point(parent.x + 1, parent.y + 1);
-            if (isPointOpen(bottomRight, play) && (isDownOpen || isRightOpen))
-                neighbors.add(bottomRight);
-        }
-
-        return neighbors;
-    }
-
-    public static boolean isPointOpen(Point point, Play play) {
-        int tileType = play.getMap().getTileData()[point.y][point.x].getTileType();
-        return !(tileType == WATER_GRASS || tileType == WATER_SAND ||
-                play.isTileBlockedOrReserved(point.x, point.y, null));
-    }
-
-
-    public static double getDistance(Point from, Point to) {
-        double xDist = from.getX() - to.getX();
-        double yDist = from.getY() - to.getY();
-
-        // Calculate the Euclidean distance for any diagonal movement
-        return Math.sqrt(xDist * xDist + yDist * yDist);
-    }
-
-    private static ArrayList<Point> reverse(ArrayList<Point> path) {
-        ArrayList<Point> reverse = new ArrayList<Point>();
-        for (int i = path.size() - 1; i >= 0; i--)
-            reverse.add(path.get(i));
-        return reverse;
-    }
-
-    public static ArrayList<Point> getUnitPathToTile(Unit u, int tileX, int tileY, Play play) {
-        // Returns a path to the specified tile, preserving the unit's current next tile in their path
-        Point goal = new Point(tileX, tileY);
-        Point start = (u.getPath() != null && !u.getPath().isEmpty()) ? u.getPath().get(0)
-                : new Point(toTileX(u.getHitbox().x), toTileY(u.getHitbox().y));
-        return getUnitPathToGoal(u, start, goal, play);
-    }
-
-    public static ArrayList<Point> getUnitPathToNearestAdjacentTile(Unit u, int goalTileX, int goalTileY, Play play) {
-        // Returns a path to the nearest open adjacent tile to the goal, preserving the unit's current next tile in their path
-        HashMap<Double, Point> openTiles = new HashMap<>();
-        Point start = (u.getPath() != null && !u.getPath().isEmpty()) ? u.getPath().get(0)
-                : new Point(toTileX(u.getHitbox().x), toTileY(u.getHitbox().y));
-
-        int mapWidth = play.getMap().getTileData()[0].length;
-        int mapHeight = play.getMap().getTileData().length;
-
-        for (int x = goalTileX - 1; x <= goalTileX + 1; x++) {
-            for (int y = goalTileY - 1; y <= goalTileY + 1; y++) {
-                if (x < 0 || y < 0 || x >= mapWidth || y >= mapHeight) continue;
-
-                Point currTarget = new Point(x, y);
-
-                if (AStar.isPointOpen(currTarget, play)) {
-                    boolean isCardinal = (x == goalTileX || y == goalTileY);
-
-                    if (!isCardinal && !isAdjacentDiagonalOpen(currTarget, new Point(goalTileX, goalTileY), play)) {
-                        continue;
-                    }
-
-                    double distance = AStar.getDistance(start, currTarget);
-                    if (!isCardinal) distance *= 2;  // Prioritize cardinally adjacent tiles
-
-                    openTiles.put(distance, currTarget);
-                }
-            }
-        }
-
-        if (openTiles.isEmpty()) return null;
-
-        ArrayList<Double> sortedDistances = new ArrayList<>(openTiles.keySet());
-        Collections.sort(sortedDistances);
-
-        for (double dist : sortedDistances) {
-            Point goal = openTiles.get(dist);
-            ArrayList<Point> path = getUnitPathToGoal(u, start, goal, play);
-            if (path != null) return path;
-        }
-        return null;
-    }
-
-    private static ArrayList<Point> getUnitPathToGoal(Unit u, Point start, Point goal, Play play) {
-        ArrayList<Point> path = pathFind(start, goal, play);
-        if (path != null && u.getPath() != null && !u.getPath().isEmpty())
-            path.add(0, u.getPath().get(0));
-        return path;
-    }
-
-    private static boolean isAdjacentDiagonalOpen(Point origin, Point target, Play play) {
-        Point verticalPoint = new Point(origin.x, origin.y + (target.y - origin.y));
-        Point horizontalPoint = new Point(origin.x + (target.x - origin.x), origin.y);
-        return AStar.isPointOpen(verticalPoint, play) || AStar.isPointOpen(horizontalPoint, play);
-    }
-
-
-}
+package pathfinding;
+
+import entities.units.Unit;
+import gamestates.Play;
+import objects.Tile;
+
+import java.awt.*;
+import java.util.*;
+
+import static main.Game.*;
+import static main.Game.toTileY;
+import static objects.Tile.WATER_GRASS;
+import static objects.Tile.WATER_SAND;
+
+public class AStar {
+
+    // Search Modes
+    public static final int SEARCH_GRID = 0;
+    public static final int SEARCH_JUMP_POINT = 1;
+
+    private static SearchEngine searchEngine;
+
+    public static ArrayList<Point> pathFind(Point start, Point goal, Play play) {
+        return pathFind(start, goal, SEARCH_GRID, play);
+    }
+
+    public static ArrayList<Point> pathFind(Point start, Point goal, int searchMode, Play play) {
+        // Goals walled off from the start would otherwise only fail after flooding the start's whole region
+        if (!play.getRegionMap().isReachable(start.x, start.y, goal.x, goal.y))
+            return null;
+        SearchEngine engine = getSearchEngine(play);
+        ArrayList<Point> path = engine.pathFind(start.x, start.y, goal.x, goal.y, searchMode, play);
+        // A path cut off by the search limits only leads part of the way, which callers here would take for the
+        // whole way, so it counts as no path. Queued requests hand it over with a tag of -1 instead
+        return engine.wasCutOff() ? null : path;
+    }
+
+    private static SearchEngine getSearchEngine(Play play) {
+        // The engine's arrays are sized to the map, so it is only rebuilt when a differently sized map is played
+        Tile[][] tileData = play.getMap().getTileData();
+        if (searchEngine == null || searchEngine.getWidth() != tileData[0].length || searchEngine.getHeight() != tileData.length)
+            searchEngine = new SearchEngine(tileData[0].length, tileData.length);
+        return searchEngine;
+    }
+
+    public static boolean isPointOpen(Point point, Play play) {
+        return isTileOpen(point.x, point.y, play);
+    }
+
+    public static boolean isTileOpen(int tileX, int tileY, Play play) {
+        int tileType = play.getMap().getTileData()[tileY][tileX].getTileType();
+        return !(tileType == WATER_GRASS || tileType == WATER_SAND ||
+                play.isTileBlockedOrReserved(tileX, tileY, null));
+    }
+
+    public static boolean isTileStaticallyOpen(int tileX, int tileY, Play play) {
+        // Ignores units and reservations, only terrain, buildings and resources that stay put are considered
+        int tileType = play.getMap().getTileData()[tileY][tileX].getTileType();
+        if (tileType == WATER_GRASS || tileType == WATER_SAND)
+            return false;
+        return !play.getOccupancyGrid().isStaticallyBlocked(tileX, tileY);
+    }
+
+
+    public static ArrayList<Point> hierarchicalPathFind(Point start, Point goal, int searchMode, Play play) {
+        // Long paths are planned across chunk entrances first and only refined through the next few chunks.
+        // The returned path can end short of the goal, in which case the unit asks for the rest once it gets there
+        if (!play.getRegionMap().isReachable(start.x, start.y, goal.x, goal.y))
+            return null;
+
+        ChunkGraph chunkGraph = play.getChunkGraph();
+        if (!chunkGraph.isLongDistance(start.x, start.y, goal.x, goal.y))
+            return pathFind(start, goal, searchMode, play);
+
+        Point waypoint = chunkGraph.findWaypoint(start.x, start.y, goal.x, goal.y);
+        if (waypoint == null)
+            return null;
+
+        ArrayList<Point> path = pathFind(start, waypoint, searchMode, play);
+        if (path == null && !waypoint.equals(goal) && !getSearchEngine(play).wasCutOff())
+            // The waypoint is taken by a unit, fall back to searching the whole way
+            path = pathFind(start, goal, searchMode, play);
+        return path;
+    }
+
+    public static double getDistance(Point from, Point to) {
+        double xDist = from.getX() - to.getX();
+        double yDist = from.getY() - to.getY();
+
+        // Calculate the Euclidean distance for any diagonal movement
+        return Math.sqrt(xDist * xDist + yDist * yDist);
+    }
+
+    public static Path getUnitPathToTile(Unit u, int tileX, int tileY, int searchMode, Play play) {
+        // Returns a path to the specified tile, preserving the unit's current next tile in their path
+        Point goal = new Point(tileX, tileY);
+        return prependNextTile(u, hierarchicalPathFind(getUnitStart(u), goal, searchMode, play));
+    }
+
+    public static Path getUnitPathToNearestAdjacentTile(Unit u, int goalTileX, int goalTileY, Play play) {
+        // Returns a path to the nearest open adjacent tile to the goal, preserving the unit's current next tile in their path
+        Point start = getUnitStart(u);
+        Point goal = new Point(goalTileX, goalTileY);
+        ArrayList<Point> path = play.getPathCache().get(start, goal, true);
+        if (path != null)
+            return prependNextTile(u, path);
+
+        PathRequest request = new PathRequest(u, start, SEARCH_GRID, PathRequest.PRIORITY_COMMAND, null);
+        addAdjacentGoals(request, goalTileX, goalTileY, 0, play);
+        if (request.getGoalCount() == 0) return null;
+
+        // All candidate tiles are searched for at once rather than one full search per tile
+        SearchEngine engine = getSearchEngine(play);
+        engine.beginSearch(start.x, start.y, request.getGoals(), request.getGoalPenalties(), request.getGoalCount(), SEARCH_GRID, play);
+        engine.setReservations(play.getReservationTable(), u);
+        engine.stepSearch(Integer.MAX_VALUE);
+        path = engine.finishSearch();
+        // Callers pick their target by this path, so one that stops short is treated as no path at all
+        if (engine.wasCutOff())
+            return null;
+        if (path != null)
+            play.getPathCache().put(start, goal, true, path);
+        return prependNextTile(u, path);
+    }
+
+    public static Path getUnitPathFromFlowField(Unit u, FlowField flowField) {
+        // Returns the unit's path down the flow field, preserving the unit's current next tile in their path
+        Point start = getUnitStart(u);
+        return prependNextTile(u, flowField.extractPath(start.x, start.y));
+    }
+
+    public static Path replanUnitPathToTile(Unit u, int tileX, int tileY, Play play) {
+        // Incremental version of getUnitPathToTile for a unit knocked off their path. Replanning towards the same
+        // tile again reuses the unit's previous search and only repairs what changed around them
+        Point start = getUnitStart(u);
+        if (!play.getRegionMap().isReachable(start.x, start.y, tileX, tileY))
+            return null;
+
+        int goal = tileY * play.getMap().getTileData()[0].length + tileX;
+        IncrementalPlanner planner = play.getReplannerPool().acquire(u);
+        long goalKey = (long) goal << 1;
+        if (!planner.hasGoal(goalKey))
+            planner.reset(goalKey, start.y * play.getMap().getTileData()[0].length + start.x, new int[]{goal}, new double[]{0}, 1);
+        ArrayList<Point> path = planner.replan(start.x, start.y, play);
+        if (planner.wasCutOff()) {
+            // Too much changed to repair within a replan. A fresh search goes through the queue, under its per-tick
+            // budget, and the unit keeps what is left of their path until it is done
+            requestUnitPathToTile(u, tileX, tileY, SEARCH_GRID, PathRequest.PRIORITY_AUTOMATIC, play, (newPath, tag) -> u.setPath(newPath));
+            return u.getPath();
+        }
+        return prependNextTile(u, path);
+    }
+
+    public static Path replanUnitPathToNearestAdjacentTile(Unit u, int goalTileX, int goalTileY, Play play) {
+        // Incremental version of getUnitPathToNearestAdjacentTile, see replanUnitPathToTile
+        Point start = getUnitStart(u);
+        int mapWidth = play.getMap().getTileData()[0].length;
+        IncrementalPlanner planner = play.getReplannerPool().acquire(u);
+        long goalKey = ((long) (goalTileY * mapWidth + goalTileX) << 1) | 1;
+        if (!planner.hasGoal(goalKey)) {
+            PathRequest request = new PathRequest(u, start, SEARCH_GRID, PathRequest.PRIORITY_AUTOMATIC, null);
+            addAdjacentGoals(request, goalTileX, goalTileY, 0, play);
+            if (request.getGoalCount() == 0)
+                return null;
+            planner.reset(goalKey, start.y * mapWidth + start.x, request.getGoals(), request.getGoalPenalties(), request.getGoalCount());
+        }
+        ArrayList<Point> path = planner.replan(start.x, start.y, play);
+        if (planner.wasCutOff()) {
+            // See replanUnitPathToTile
+            requestUnitPathToNearestAdjacentTile(u, goalTileX, goalTileY, PathRequest.PRIORITY_AUTOMATIC, play, (newPath, tag) -> u.setPath(newPath));
+            return u.getPath();
+        }
+        return prependNextTile(u, path);
+    }
+
+    public static void requestUnitPathToTile(Unit u, int tileX, int tileY, int searchMode, int priority, Play play, PathRequest.Callback callback) {
+        // Queued version of getUnitPathToTile, the callback runs once the search is done
+        PathRequest request = new PathRequest(u, getUnitStart(u), searchMode, priority, callback);
+        request.setHierarchicalGoal(new Point(tileX, tileY));
+        play.getPathRequestQueue().submit(request);
+    }
+
+    public static void requestUnitPathOnward(Unit u, int tileX, int tileY, int searchMode, int priority, Play play, PathRequest.Callback callback) {
+        // Queued version of getUnitPathToTile searched from the last tile of the unit's path instead of their next
+        // one. The unit keeps walking their path in the meantime, and the found path carries on from its end
+        PathRequest request = new PathRequest(u, u.getPath().getLast(), searchMode, priority, callback);
+        request.setHierarchicalGoal(new Point(tileX, tileY));
+        request.setOnward(true);
+        play.getPathRequestQueue().submit(request);
+    }
+
+    public static void requestUnitPathToNearestAdjacentTile(Unit u, int goalTileX, int goalTileY, int priority, Play play, PathRequest.Callback callback) {
+        // Queued version of getUnitPathToNearestAdjacentTile, the callback runs once the search is done.
+        // A cached path is handed over straight away
+        Point goal = new Point(goalTileX, goalTileY);
+        ArrayList<Point> path = play.getPathCache().get(getUnitStart(u), goal, true);
+        if (path != null) {
+            u.setPathRequest(null);
+            callback.pathFound(prependNextTile(u, path), 0);
+            return;
+        }
+
+        PathRequest request = newUnitPathRequest(u, priority, callback);
+        request.setCacheGoal(goal);
+        addAdjacentGoals(request, goalTileX, goalTileY, 0, play);
+        play.getPathRequestQueue().submit(request);
+    }
+
+    public static PathRequest newUnitPathRequest(Unit u, int priority, PathRequest.Callback callback) {
+        return new PathRequest(u, getUnitStart(u), SEARCH_GRID, priority, callback);
+    }
+
+    public static void addAdjacentGoals(PathRequest request, int goalTileX, int goalTileY, int tag, Play play) {
+        // Adds every open tile adjacent to the goal that is reachable from the request's start
+        Point start = request.getStart();
+        int mapWidth = play.getMap().getTileData()[0].length;
+        int mapHeight = play.getMap().getTileData().length;
+        RegionMap regionMap = play.getRegionMap();
+
+        for (int x = goalTileX - 1; x <= goalTileX + 1; x++) {
+            for (int y = goalTileY - 1; y <= goalTileY + 1; y++) {
+                if (x < 0 || y < 0 || x >= mapWidth || y >= mapHeight) continue;
+
+                Point currTarget = new Point(x, y);
+
+                if (AStar.isPointOpen(currTarget, play) && regionMap.isReachable(start.x, start.y, x, y)) {
+                    boolean isCardinal = (x == goalTileX || y == goalTileY);
+
+                    if (!isCardinal && !isAdjacentDiagonalOpen(currTarget, new Point(goalTileX, goalTileY), play)) {
+                        continue;
+                    }
+
+                    // Prioritize cardinally adjacent tiles by charging diagonal ones their distance a second time
+                    request.addGoal(y * mapWidth + x, isCardinal ? 0 : AStar.getDistance(start, currTarget), tag);
+                }
+            }
+        }
+    }
+
+    private static Point getUnitStart(Unit u) {
+        return (u.getPath() != null && !u.getPath().isEmpty()) ? u.getPath().get(0)
+                : new Point(toTileX(u.getHitbox().x), toTileY(u.getHitbox().y));
+    }
+
+    private static Path prependNextTile(Unit u, ArrayList<Point> path) {
+        // Packs the path behind the unit's current next tile
+        Point nextTile = (u.getPath() != null && !u.getPath().isEmpty()) ? u.getPath().get(0) : null;
+        return Path.of(nextTile, path);
+    }
+
+    private static boolean isAdjacentDiagonalOpen(Point origin, Point target, Play play) {
+        Point verticalPoint = new Point(origin.x, origin.y + (target.y - origin.y));
+        Point horizontalPoint = new Point(origin.x + (target.x - origin.x), origin.y);
+        return AStar.isPointOpen(verticalPoint, play) || AStar.isPointOpen(horizontalPoint, play);
+    }
+
+
+}
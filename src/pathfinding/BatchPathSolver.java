@@ -0,0 +1,79 @@
+package pathfinding;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+public class BatchPathSolver {
+
+    // Solves many independent requests in parallel against one immutable grid. Every worker thread keeps its own
+    // search engine and results are stored by request index, so the output never depends on the number of threads.
+    // Pools are shared by every solver of the same parallelism and their threads are daemons, so a solver never
+    // needs shutting down when its Play goes away
+    private static final HashMap<Integer, ForkJoinPool> POOLS = new HashMap<>();
+
+    private ForkJoinPool pool;
+    private ThreadLocal<SearchEngine> searchEngines = new ThreadLocal<>();
+
+    public BatchPathSolver(int parallelism) {
+        this.pool = getPool(parallelism);
+    }
+
+    private static synchronized ForkJoinPool getPool(int parallelism) {
+        return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    public List<ArrayList<Point>> solve(List<PathRequest> requests, TileGrid grid, ReservationTable reservations) {
+        // The reservation table is only read by the workers, nothing writes to it until the batch has been joined.
+        // Null leaves reservations out, as for requests without a unit
+        List<ArrayList<Point>> paths = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        pool.submit(() -> IntStream.range(0, requests.size()).parallel()
+                .forEach(i -> paths.set(i, solve(requests.get(i), grid, reservations)))).join();
+        return paths;
+    }
+
+    private ArrayList<Point> solve(PathRequest request, TileGrid grid, ReservationTable reservations) {
+        SearchEngine searchEngine = getSearchEngine(grid);
+        ArrayList<Point> path = search(searchEngine, request, request.getGoals(), request.getGoalPenalties(),
+                request.getGoalCount(), grid, reservations);
+
+        Point fallbackGoal = request.getFallbackGoal();
+        if (path == null && fallbackGoal != null)
+            path = search(searchEngine, request, new int[]{fallbackGoal.y * grid.getWidth() + fallbackGoal.x}, new double[1], 1,
+                    grid, reservations);
+        return path;
+    }
+
+    private ArrayList<Point> search(SearchEngine searchEngine, PathRequest request, int[] goals, double[] goalPenalties,
+                                    int goalCount, TileGrid grid, ReservationTable reservations) {
+        Point start = request.getStart();
+        searchEngine.beginSearch(start.x, start.y, goals, goalPenalties, goalCount, request.getSearchMode(), grid);
+        // Only the expansion limit applies here. Wall time on a worker depends on what the other workers are
+        // doing, and a deadline would make results depend on the number of threads
+        searchEngine.setLimits(request.getMaxExpansions(), Long.MAX_VALUE);
+        // Same as the time sliced queue, so both modes steer around the same reserved tiles
+        if (reservations != null && request.getUnit() != null)
+            searchEngine.setReservations(reservations, request.getUnit());
+        searchEngine.stepSearch(Integer.MAX_VALUE);
+        request.setCutOff(searchEngine.wasCutOff());
+        return searchEngine.finishSearch();
+    }
+
+    private SearchEngine getSearchEngine(TileGrid grid) {
+        SearchEngine searchEngine = searchEngines.get();
+        if (searchEngine == null || searchEngine.getWidth() != grid.getWidth() || searchEngine.getHeight() != grid.getHeight()) {
+            searchEngine = new SearchEngine(grid.getWidth(), grid.getHeight());
+            searchEngines.set(searchEngine);
+        }
+        return searchEngine;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+}
@@ -0,0 +1,429 @@
+package pathfinding;
+
+import gamestates.Play;
+import objects.Chunk;
+
+import java.awt.*;
+import java.util.Arrays;
+
+import static objects.Chunk.MAX_CHUNK_SIZE;
+import static pathfinding.AStar.isTileStaticallyOpen;
+import static pathfinding.SearchEngine.DIAGONAL_COST;
+
+public class ChunkGraph {
+
+    // Border runs shorter than this get a single entrance in the middle, longer runs get one at each end
+    private static final int MAX_SINGLE_ENTRANCE_LENGTH = 6;
+
+    // How many chunk borders a path is refined across before the unit has to ask for the rest
+    public static final int REFINED_CHUNKS = 2;
+
+    private Play play;
+    private Chunk[][] chunks;
+    private int width, height, numChunksX, numChunksY;
+    private int[] chunkXOfTile, chunkYOfTile;
+
+    // Abstract nodes are border tiles, identified by their tile index. Each chunk caches the static cost
+    // between every pair of its nodes, so a long search only has to walk entrance-to-entrance
+    private int[][][] chunkNodes;
+    private double[][][] chunkCosts;
+    private int[] nodeSlot;
+    private boolean[][] nodesDirty, costsDirty;
+    private boolean anyDirty;
+
+    // Abstract search state
+    private IndexedHeap openList;
+    private double[] gCost;
+    private int[] parent;
+    private int[] visitedGeneration, closedGeneration;
+    private int generation;
+
+    // Chunk-local Dijkstra state
+    private IndexedHeap localOpenList;
+    private boolean[] localOpen;
+    private double[] localCost, startCosts, goalCosts;
+    private int[] localGeneration;
+    private int localSearch;
+
+    public ChunkGraph(Play play) {
+        this.play = play;
+        this.chunks = play.getMap().getChunks();
+        this.width = play.getMap().getTileData()[0].length;
+        this.height = play.getMap().getTileData().length;
+        this.numChunksX = chunks[0].length;
+        this.numChunksY = chunks.length;
+
+        initTileLookups();
+
+        int numTiles = width * height;
+        this.nodeSlot = new int[numTiles];
+        Arrays.fill(nodeSlot, -1);
+        this.openList = new IndexedHeap(numTiles);
+        this.gCost = new double[numTiles];
+        this.parent = new int[numTiles];
+        this.visitedGeneration = new int[numTiles];
+        this.closedGeneration = new int[numTiles];
+
+        int maxChunkTiles = MAX_CHUNK_SIZE * MAX_CHUNK_SIZE;
+        this.localOpenList = new IndexedHeap(maxChunkTiles);
+        this.localOpen = new boolean[maxChunkTiles];
+        this.localCost = new double[maxChunkTiles];
+        this.startCosts = new double[maxChunkTiles];
+        this.goalCosts = new double[maxChunkTiles];
+        this.localGeneration = new int[maxChunkTiles];
+
+        this.chunkNodes = new int[numChunksY][numChunksX][];
+        this.chunkCosts = new double[numChunksY][numChunksX][];
+        this.nodesDirty = new boolean[numChunksY][numChunksX];
+        this.costsDirty = new boolean[numChunksY][numChunksX];
+        for (boolean[] row : nodesDirty)
+            Arrays.fill(row, true);
+        for (boolean[] row : costsDirty)
+            Arrays.fill(row, true);
+        this.anyDirty = true;
+    }
+
+    private void initTileLookups() {
+        chunkXOfTile = new int[width];
+        chunkYOfTile = new int[height];
+        for (int chunkX = 0; chunkX < numChunksX; chunkX++) {
+            Chunk c = chunks[0][chunkX];
+            for (int x = c.getxStart(); x < c.getxStart() + c.getTileWdith(); x++)
+                chunkXOfTile[x] = chunkX;
+        }
+        for (int chunkY = 0; chunkY < numChunksY; chunkY++) {
+            Chunk c = chunks[chunkY][0];
+            for (int y = c.getyStart(); y < c.getyStart() + c.getTileHeight(); y++)
+                chunkYOfTile[y] = chunkY;
+        }
+    }
+
+    public void tilesChanged(int tileX, int tileY, int tileWidth, int tileHeight) {
+        // Only the chunks containing the changed tiles need new costs. Their neighbors only need new
+        // entrances when a changed tile sits on the border they share
+        for (int y = tileY; y < tileY + tileHeight; y++)
+            for (int x = tileX; x < tileX + tileWidth; x++) {
+                int chunkX = chunkXOfTile[x];
+                int chunkY = chunkYOfTile[y];
+                Chunk c = chunks[chunkY][chunkX];
+                costsDirty[chunkY][chunkX] = true;
+
+                if (x == c.getxStart() && chunkX > 0)
+                    markNodesDirty(chunkX, chunkY, chunkX - 1, chunkY);
+                if (x == c.getxStart() + c.getTileWdith() - 1 && chunkX < numChunksX - 1)
+                    markNodesDirty(chunkX, chunkY, chunkX + 1, chunkY);
+                if (y == c.getyStart() && chunkY > 0)
+                    markNodesDirty(chunkX, chunkY, chunkX, chunkY - 1);
+                if (y == c.getyStart() + c.getTileHeight() - 1 && chunkY < numChunksY - 1)
+                    markNodesDirty(chunkX, chunkY, chunkX, chunkY + 1);
+            }
+        anyDirty = true;
+    }
+
+    private void markNodesDirty(int chunkX, int chunkY, int neighborX, int neighborY) {
+        nodesDirty[chunkY][chunkX] = true;
+        nodesDirty[neighborY][neighborX] = true;
+    }
+
+    public boolean isLongDistance(int startX, int startY, int goalX, int goalY) {
+        int chunkDistX = Math.abs(chunkXOfTile[startX] - chunkXOfTile[goalX]);
+        int chunkDistY = Math.abs(chunkYOfTile[startY] - chunkYOfTile[goalY]);
+        return Math.max(chunkDistX, chunkDistY) >= 2;
+    }
+
+    public Point findWaypoint(int startX, int startY, int goalX, int goalY) {
+        // Searches the abstract graph and returns the tile the low level path should be refined to,
+        // or null when the goal cannot be reached past the static blockers
+        if (!isTileStaticallyOpen(goalX, goalY, play))
+            return null;
+
+        rebuildDirtyChunks();
+
+        int start = startY * width + startX;
+        int goal = goalY * width + goalX;
+        int startChunkX = chunkXOfTile[startX], startChunkY = chunkYOfTile[startY];
+        int goalChunkX = chunkXOfTile[goalX], goalChunkY = chunkYOfTile[goalY];
+
+        searchChunk(startChunkX, startChunkY, start, startCosts);
+        searchChunk(goalChunkX, goalChunkY, goal, goalCosts);
+
+        nextGeneration();
+        visit(start, -1, 0);
+        openList.add(start, getDistance(start, goal));
+        boolean found = false;
+
+        while (!openList.isEmpty()) {
+            int current = openList.poll();
+            closedGeneration[current] = generation;
+
+            if (current == goal) {
+                found = true;
+                break;
+            }
+
+            int x = current % width;
+            int y = current / width;
+            int chunkX = chunkXOfTile[x];
+            int chunkY = chunkYOfTile[y];
+            int[] nodes = chunkNodes[chunkY][chunkX];
+            int slot = nodeSlot[current];
+
+            if (current == start) {
+                Chunk c = chunks[chunkY][chunkX];
+                for (int node : nodes)
+                    relax(current, node, startCosts[toLocalIndex(c, node)], goal);
+            } else if (slot != -1) {
+                double[] costs = chunkCosts[chunkY][chunkX];
+                for (int i = 0; i < nodes.length; i++)
+                    if (i != slot)
+                        relax(current, nodes[i], costs[slot * nodes.length + i], goal);
+            }
+
+            if (slot != -1)
+                relaxCrossings(current, x, y, chunkX, chunkY, goal);
+
+            if (chunkX == goalChunkX && chunkY == goalChunkY)
+                relax(current, goal, goalCosts[toLocalIndex(chunks[chunkY][chunkX], current)], goal);
+        }
+
+        openList.clear();
+
+        if (!found)
+            return null;
+        return getRefinementTarget(start, goal);
+    }
+
+    private void relaxCrossings(int current, int x, int y, int chunkX, int chunkY, int goal) {
+        // Any two open border tiles facing each other across a chunk border can be walked between
+        if (x > 0 && chunkXOfTile[x - 1] != chunkX && nodeSlot[current - 1] != -1)
+            relax(current, current - 1, 1, goal);
+        if (x < width - 1 && chunkXOfTile[x + 1] != chunkX && nodeSlot[current + 1] != -1)
+            relax(current, current + 1, 1, goal);
+        if (y > 0 && chunkYOfTile[y - 1] != chunkY && nodeSlot[current - width] != -1)
+            relax(current, current - width, 1, goal);
+        if (y < height - 1 && chunkYOfTile[y + 1] != chunkY && nodeSlot[current + width] != -1)
+            relax(current, current + width, 1, goal);
+    }
+
+    private void relax(int current, int next, double stepCost, int goal) {
+        if (stepCost == Double.POSITIVE_INFINITY || closedGeneration[next] == generation)
+            return;
+
+        double g = gCost[current] + stepCost;
+        if (visitedGeneration[next] == generation) {
+            if (g < gCost[next]) {
+                visit(next, current, g);
+                openList.decreaseKey(next, g + getDistance(next, goal));
+            }
+        } else {
+            visit(next, current, g);
+            openList.add(next, g + getDistance(next, goal));
+        }
+    }
+
+    private void visit(int node, int parentNode, double g) {
+        visitedGeneration[node] = generation;
+        parent[node] = parentNode;
+        gCost[node] = g;
+    }
+
+    private Point getRefinementTarget(int start, int goal) {
+        // Returns the node where the abstract path crosses its REFINED_CHUNKS-th chunk border, or the goal if it
+        // crosses fewer. The path is stored goal to start, so crossings are counted from the back
+        int numCrossings = 0;
+        for (int node = goal; node != start; node = parent[node])
+            if (getChunkIndex(node) != getChunkIndex(parent[node]))
+                numCrossings++;
+
+        if (numCrossings <= REFINED_CHUNKS)
+            return new Point(goal % width, goal / width);
+
+        int crossing = numCrossings;
+        for (int node = goal; node != start; node = parent[node])
+            if (getChunkIndex(node) != getChunkIndex(parent[node])) {
+                if (crossing == REFINED_CHUNKS)
+                    return new Point(node % width, node / width);
+                crossing--;
+            }
+        return new Point(goal % width, goal / width);
+    }
+
+    private void rebuildDirtyChunks() {
+        if (!anyDirty)
+            return;
+
+        for (int chunkY = 0; chunkY < numChunksY; chunkY++)
+            for (int chunkX = 0; chunkX < numChunksX; chunkX++)
+                if (nodesDirty[chunkY][chunkX]) {
+                    rebuildNodes(chunkX, chunkY);
+                    nodesDirty[chunkY][chunkX] = false;
+                    costsDirty[chunkY][chunkX] = true;
+                }
+
+        for (int chunkY = 0; chunkY < numChunksY; chunkY++)
+            for (int chunkX = 0; chunkX < numChunksX; chunkX++)
+                if (costsDirty[chunkY][chunkX]) {
+                    rebuildCosts(chunkX, chunkY);
+                    costsDirty[chunkY][chunkX] = false;
+                }
+
+        anyDirty = false;
+    }
+
+    private void rebuildNodes(int chunkX, int chunkY) {
+        int[] oldNodes = chunkNodes[chunkY][chunkX];
+        if (oldNodes != null)
+            for (int node : oldNodes)
+                nodeSlot[node] = -1;
+
+        Chunk c = chunks[chunkY][chunkX];
+        int xStart = c.getxStart(), yStart = c.getyStart();
+        int xEnd = xStart + c.getTileWdith() - 1, yEnd = yStart + c.getTileHeight() - 1;
+
+        // Entrances are placed on each side of a border the same way, so both chunks agree on them
+        int[] buffer = new int[2 * (c.getTileWdith() + c.getTileHeight())];
+        int count = 0;
+        if (chunkY > 0)
+            count = addEntrances(buffer, count, xStart, yStart, 1, 0, 0, -1, c.getTileWdith());
+        if (chunkY < numChunksY - 1)
+            count = addEntrances(buffer, count, xStart, yEnd, 1, 0, 0, 1, c.getTileWdith());
+        if (chunkX > 0)
+            count = addEntrances(buffer, count, xStart, yStart, 0, 1, -1, 0, c.getTileHeight());
+        if (chunkX < numChunksX - 1)
+            count = addEntrances(buffer, count, xEnd, yStart, 0, 1, 1, 0, c.getTileHeight());
+
+        int[] nodes = new int[count];
+        int numNodes = 0;
+        for (int i = 0; i < count; i++)
+            if (nodeSlot[buffer[i]] == -1) {
+                // Corner tiles can be an entrance on two borders but are only one node
+                nodeSlot[buffer[i]] = numNodes;
+                nodes[numNodes++] = buffer[i];
+            }
+        chunkNodes[chunkY][chunkX] = Arrays.copyOf(nodes, numNodes);
+    }
+
+    private int addEntrances(int[] buffer, int count, int x, int y, int stepX, int stepY, int acrossX, int acrossY, int length) {
+        int runStart = -1;
+        for (int i = 0; i <= length; i++) {
+            int currX = x + stepX * i;
+            int currY = y + stepY * i;
+            boolean open = i < length && isTileStaticallyOpen(currX, currY, play)
+                    && isTileStaticallyOpen(currX + acrossX, currY + acrossY, play);
+
+            if (open && runStart == -1)
+                runStart = i;
+            else if (!open && runStart != -1) {
+                int runLength = i - runStart;
+                if (runLength < MAX_SINGLE_ENTRANCE_LENGTH) {
+                    int middle = runStart + runLength / 2;
+                    buffer[count++] = (y + stepY * middle) * width + (x + stepX * middle);
+                } else {
+                    buffer[count++] = (y + stepY * runStart) * width + (x + stepX * runStart);
+                    buffer[count++] = (y + stepY * (i - 1)) * width + (x + stepX * (i - 1));
+                }
+                runStart = -1;
+            }
+        }
+        return count;
+    }
+
+    private void rebuildCosts(int chunkX, int chunkY) {
+        Chunk c = chunks[chunkY][chunkX];
+        int[] nodes = chunkNodes[chunkY][chunkX];
+        double[] costs = new double[nodes.length * nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            searchChunk(chunkX, chunkY, nodes[i], localCost);
+            for (int j = 0; j < nodes.length; j++)
+                costs[i * nodes.length + j] = localCost[toLocalIndex(c, nodes[j])];
+        }
+        chunkCosts[chunkY][chunkX] = costs;
+    }
+
+    private void searchChunk(int chunkX, int chunkY, int source, double[] costs) {
+        // Dijkstra from the source to every tile of its chunk, without leaving the chunk
+        Chunk c = chunks[chunkY][chunkX];
+        int chunkWidth = c.getTileWdith();
+        int chunkHeight = c.getTileHeight();
+        int numTiles = chunkWidth * chunkHeight;
+
+        for (int i = 0; i < numTiles; i++) {
+            localOpen[i] = isTileStaticallyOpen(c.getxStart() + i % chunkWidth, c.getyStart() + i / chunkWidth, play);
+            costs[i] = Double.POSITIVE_INFINITY;
+        }
+
+        if (localSearch == Integer.MAX_VALUE) {
+            Arrays.fill(localGeneration, 0);
+            localSearch = 0;
+        }
+        localSearch++;
+        int sourceIdx = toLocalIndex(c, source);
+        costs[sourceIdx] = 0;
+        localOpenList.add(sourceIdx, 0);
+
+        while (!localOpenList.isEmpty()) {
+            int current = localOpenList.poll();
+            localGeneration[current] = localSearch;
+            int x = current % chunkWidth;
+            int y = current / chunkWidth;
+
+            boolean isUpOpen = y > 0 && localOpen[current - chunkWidth];
+            boolean isRightOpen = x < chunkWidth - 1 && localOpen[current + 1];
+            boolean isDownOpen = y < chunkHeight - 1 && localOpen[current + chunkWidth];
+            boolean isLeftOpen = x > 0 && localOpen[current - 1];
+
+            if (isUpOpen) relaxLocal(current, current - chunkWidth, 1, costs);
+            if (isRightOpen) relaxLocal(current, current + 1, 1, costs);
+            if (isDownOpen) relaxLocal(current, current + chunkWidth, 1, costs);
+            if (isLeftOpen) relaxLocal(current, current - 1, 1, costs);
+
+            if ((isUpOpen || isLeftOpen) && y > 0 && x > 0 && localOpen[current - chunkWidth - 1])
+                relaxLocal(current, current - chunkWidth - 1, DIAGONAL_COST, costs);
+            if ((isUpOpen || isRightOpen) && y > 0 && x < chunkWidth - 1 && localOpen[current - chunkWidth + 1])
+                relaxLocal(current, current - chunkWidth + 1, DIAGONAL_COST, costs);
+            if ((isDownOpen || isLeftOpen) && y < chunkHeight - 1 && x > 0 && localOpen[current + chunkWidth - 1])
+                relaxLocal(current, current + chunkWidth - 1, DIAGONAL_COST, costs);
+            if ((isDownOpen || isRightOpen) && y < chunkHeight - 1 && x < chunkWidth - 1 && localOpen[current + chunkWidth + 1])
+                relaxLocal(current, current + chunkWidth + 1, DIAGONAL_COST, costs);
+        }
+    }
+
+    private void relaxLocal(int current, int next, double stepCost, double[] costs) {
+        if (localGeneration[next] == localSearch)
+            return;
+
+        double cost = costs[current] + stepCost;
+        if (cost < costs[next]) {
+            boolean isQueued = costs[next] != Double.POSITIVE_INFINITY;
+            costs[next] = cost;
+            if (isQueued)
+                localOpenList.decreaseKey(next, cost);
+            else
+                localOpenList.add(next, cost);
+        }
+    }
+
+    private int toLocalIndex(Chunk c, int tile) {
+        return (tile / width - c.getyStart()) * c.getTileWdith() + (tile % width - c.getxStart());
+    }
+
+    private int getChunkIndex(int tile) {
+        return chunkYOfTile[tile / width] * numChunksX + chunkXOfTile[tile % width];
+    }
+
+    private double getDistance(int from, int to) {
+        double xDist = from % width - to % width;
+        double yDist = from / width - to / width;
+        return Math.sqrt(xDist * xDist + yDist * yDist);
+    }
+
+    private void nextGeneration() {
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(visitedGeneration, 0);
+            Arrays.fill(closedGeneration, 0);
+            generation = 0;
+        }
+        generation++;
+    }
+
+}
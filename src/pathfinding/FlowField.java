@@ -0,0 +1,144 @@
+package pathfinding;
+
+import entities.buildings.Building;
+import gamestates.Play;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static main.Game.*;
+import static pathfinding.SearchEngine.DIAGONAL_COST;
+
+public class FlowField {
+
+    // Up, Right, Down, Left, then Top-left, Top-right, Bottom-left, Bottom-right
+    private static final int[] DX = {0, 1, 0, -1, -1, 1, -1, 1};
+    private static final int[] DY = {-1, 0, 1, 0, -1, -1, 1, 1};
+    private static final byte NO_DIRECTION = -1;
+
+    // One Dijkstra integration outwards from every tile beside a building. Each tile stores the direction of its
+    // cheapest step towards the building, so any number of units sent there share a single search.
+    // Only terrain and static blockers are considered, units are dealt with by the usual replanning in Unit.move.
+    // The open list is lent by the cache and shared by all of its fields, only one is ever being built at a time
+    private Play play;
+    private Building building;
+    private IndexedHeap openList;
+    private int width, height;
+    private double[] cost;
+    private byte[] directions;
+    private boolean isStale = true;
+    private int references;
+
+    public FlowField(Play play, Building building, IndexedHeap openList) {
+        this.play = play;
+        this.building = building;
+        this.openList = openList;
+        this.width = play.getMap().getTileData()[0].length;
+        this.height = play.getMap().getTileData().length;
+        this.cost = new double[width * height];
+        this.directions = new byte[width * height];
+    }
+
+    public ArrayList<Point> extractPath(int startX, int startY) {
+        // Follows the field from the start to the building. Like a search, the start tile itself is not included
+        if (isStale)
+            build();
+
+        int tile = startY * width + startX;
+        if (cost[tile] == Double.MAX_VALUE)
+            return null;
+
+        ArrayList<Point> path = new ArrayList<>();
+        while (directions[tile] != NO_DIRECTION) {
+            int dir = directions[tile];
+            tile += DY[dir] * width + DX[dir];
+            path.add(new Point(tile % width, tile / width));
+        }
+        return path;
+    }
+
+    private void build() {
+        Arrays.fill(cost, Double.MAX_VALUE);
+        Arrays.fill(directions, NO_DIRECTION);
+        openList.clear();
+        RegionMap regionMap = play.getRegionMap();
+
+        // Every open tile directly beside the building's footprint is a goal. A tile diagonally off one of its
+        // corners is too, as long as one of the two tiles between it and the corner is open, the same as
+        // AStar.addAdjacentGoals
+        Rectangle hitbox = building.getHitbox();
+        int minX = toTileX(hitbox.x);
+        int minY = toTileY(hitbox.y);
+        int maxX = minX + hitbox.width / TILE_SIZE - 1;
+        int maxY = minY + hitbox.height / TILE_SIZE - 1;
+        for (int y = minY - 1; y <= maxY + 1; y++)
+            for (int x = minX - 1; x <= maxX + 1; x++) {
+                if (!isOpen(regionMap, x, y))
+                    continue;
+                boolean isCorner = (x < minX || x > maxX) && (y < minY || y > maxY);
+                int cornerX = Math.max(minX, Math.min(maxX, x));
+                int cornerY = Math.max(minY, Math.min(maxY, y));
+                if (isCorner && !isOpen(regionMap, x, cornerY) && !isOpen(regionMap, cornerX, y))
+                    continue;
+                int tile = y * width + x;
+                if (cost[tile] != 0) {
+                    cost[tile] = 0;
+                    openList.add(tile, 0);
+                }
+            }
+
+        while (!openList.isEmpty()) {
+            int current = openList.poll();
+            int x = current % width;
+            int y = current / width;
+
+            for (int dir = 0; dir < DX.length; dir++) {
+                int nx = x + DX[dir];
+                int ny = y + DY[dir];
+                if (!isOpen(regionMap, nx, ny))
+                    continue;
+                // Stepping from the neighbor back to this tile diagonally needs one of the cardinal tiles between them open
+                boolean isDiagonal = dir >= 4;
+                if (isDiagonal && !isOpen(regionMap, x, ny) && !isOpen(regionMap, nx, y))
+                    continue;
+
+                int next = ny * width + nx;
+                double newCost = cost[current] + (isDiagonal ? DIAGONAL_COST : 1);
+                if (newCost < cost[next]) {
+                    boolean isQueued = cost[next] != Double.MAX_VALUE;
+                    cost[next] = newCost;
+                    // The neighbor flows back the opposite way, dir ^ 2 flips a cardinal direction and 11 - dir a diagonal one
+                    directions[next] = (byte) (isDiagonal ? 11 - dir : dir ^ 2);
+                    if (isQueued)
+                        openList.decreaseKey(next, newCost);
+                    else
+                        openList.add(next, newCost);
+                }
+            }
+        }
+
+        isStale = false;
+    }
+
+    private boolean isOpen(RegionMap regionMap, int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height && regionMap.getLabel(x, y) != 0;
+    }
+
+    public void markStale() {
+        isStale = true;
+    }
+
+    public void addReference() {
+        references++;
+    }
+
+    public int removeReference() {
+        return --references;
+    }
+
+    public Building getBuilding() {
+        return building;
+    }
+
+}
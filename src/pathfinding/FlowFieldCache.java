@@ -0,0 +1,49 @@
+package pathfinding;
+
+import entities.buildings.Building;
+import gamestates.Play;
+
+import java.util.HashMap;
+
+public class FlowFieldCache {
+
+    // Flow fields are shared by every unit heading to the same building and dropped once the last of them lets go
+    private Play play;
+    private HashMap<Building, FlowField> flowFields = new HashMap<>();
+    private IndexedHeap openList;
+
+    public FlowFieldCache(Play play) {
+        this.play = play;
+        this.openList = new IndexedHeap(play.getMap().getTileData()[0].length * play.getMap().getTileData().length);
+    }
+
+    public FlowField acquire(Building building) {
+        FlowField flowField = flowFields.get(building);
+        if (flowField == null) {
+            flowField = new FlowField(play, building, openList);
+            flowFields.put(building, flowField);
+        }
+        flowField.addReference();
+        return flowField;
+    }
+
+    public void release(FlowField flowField) {
+        if (flowField.removeReference() <= 0)
+            flowFields.remove(flowField.getBuilding());
+    }
+
+    public void tilesChanged() {
+        // Fields are rebuilt the next time a unit reads from them
+        for (FlowField flowField : flowFields.values())
+            flowField.markStale();
+    }
+
+    public boolean contains(Building building) {
+        return flowFields.containsKey(building);
+    }
+
+    public int size() {
+        return flowFields.size();
+    }
+
+}
@@ -0,0 +1,361 @@
+package pathfinding;
+
+import gamestates.Play;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static pathfinding.SearchEngine.DIAGONAL_COST;
+
+public class IncrementalPlanner {
+
+    private static final double INFINITY = Double.MAX_VALUE;
+    // Tiles this close to the unit, and the goal tiles, are checked for changes before every replan
+    private static final int SENSE_RADIUS = 3;
+    // Caps a single replan, a tree that needs more repair than this is cheaper to throw away
+    private static final int MAX_EXPANSIONS = 20000;
+
+    private static final double TIE_BREAK_SCALE = 1e-9;
+
+    private static final byte TILE_OPEN = 1;
+    private static final byte TILE_BLOCKED = 2;
+    // Blocked only by units standing on or stepping onto the tile
+    private static final byte TILE_OCCUPIED = 3;
+
+    // Up, Right, Down, Left, then Top-left, Top-right, Bottom-left, Bottom-right
+    private static final int[] DX = {0, 1, 0, -1, -1, 1, -1, 1};
+    private static final int[] DY = {-1, 0, 1, 0, -1, -1, 1, 1};
+
+    // D* Lite: searches backwards from the goals to the unit and keeps its search tree between replans. Tiles are
+    // read from the game the first time they are needed and remembered after that. Before a replan the tiles around
+    // the unit and the goals are checked again, and so is every tile that was only blocked by units, since those
+    // move on wherever they are. A changed tile repairs just the part of the tree that went through it, instead of
+    // starting a fresh search every time the unit bumps into someone
+    private int width, height;
+    private double[] g, rhs;
+    private int[] vertexGeneration;
+    private byte[] tileState;
+    private int[] tileGeneration;
+    // Every tile currently remembered as occupied, in no particular order
+    private int[] occupiedTiles = new int[64];
+    private int occupiedCount;
+    private int[] goalGeneration;
+    private int generation;
+    private IndexedHeap openList;
+
+    private Play play;
+    private long goalKey = -1;
+    private int[] goals;
+    private double[] goalPenalties;
+    private int goalCount;
+    private int start, lastStart;
+    private double km;
+
+    private int nodesExpanded;
+    private boolean cutOff;
+
+    public IncrementalPlanner(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int numTiles = width * height;
+        this.g = new double[numTiles];
+        this.rhs = new double[numTiles];
+        this.vertexGeneration = new int[numTiles];
+        this.tileState = new byte[numTiles];
+        this.tileGeneration = new int[numTiles];
+        this.goalGeneration = new int[numTiles];
+        this.openList = new IndexedHeap(numTiles);
+    }
+
+    public void reset(long goalKey, int start, int[] goals, double[] goalPenalties, int goalCount) {
+        // Throws away the old search tree and starts over towards new goals
+        this.goalKey = goalKey;
+        this.goals = goals;
+        this.goalPenalties = goalPenalties;
+        this.goalCount = goalCount;
+        this.start = start;
+        this.lastStart = start;
+        this.km = 0;
+        this.occupiedCount = 0;
+        openList.clear();
+
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(vertexGeneration, 0);
+            Arrays.fill(tileGeneration, 0);
+            Arrays.fill(goalGeneration, 0);
+            generation = 1;
+        }
+
+        for (int i = 0; i < goalCount; i++) {
+            int goal = goals[i];
+            goalGeneration[goal] = generation;
+            touch(goal);
+            rhs[goal] = Math.min(rhs[goal], goalPenalties[i]);
+        }
+        for (int i = 0; i < goalCount; i++)
+            if (!openList.contains(goals[i]))
+                openList.add(goals[i], calculateKey(goals[i]));
+    }
+
+    public ArrayList<Point> replan(int startX, int startY, Play play) {
+        // Returns the cheapest known path from the start to a goal, not including the start tile. Null when there
+        // is none, or when the repair hit MAX_EXPANSIONS, which wasCutOff tells apart
+        this.play = play;
+        this.nodesExpanded = 0;
+        start = startY * width + startX;
+        km += getDistance(lastStart, start);
+        lastStart = start;
+
+        senseChanges();
+        computeShortestPath();
+        ArrayList<Point> path = null;
+        cutOff = nodesExpanded >= MAX_EXPANSIONS;
+        if (!cutOff)
+            path = extractPath();
+        else
+            clear();
+        this.play = null;
+        return path;
+    }
+
+    private void senseChanges() {
+        int startX = start % width;
+        int startY = start / width;
+        for (int y = Math.max(0, startY - SENSE_RADIUS); y <= Math.min(height - 1, startY + SENSE_RADIUS); y++)
+            for (int x = Math.max(0, startX - SENSE_RADIUS); x <= Math.min(width - 1, startX + SENSE_RADIUS); x++)
+                senseTile(y * width + x);
+        for (int i = 0; i < goalCount; i++)
+            senseTile(goals[i]);
+
+        // Tiles first read while repairing are added past the end and moved down after the ones still occupied
+        int end = occupiedCount;
+        int kept = 0;
+        for (int i = 0; i < end; i++) {
+            int tile = occupiedTiles[i];
+            senseTile(tile);
+            if (tileState[tile] == TILE_OCCUPIED)
+                occupiedTiles[kept++] = tile;
+        }
+        System.arraycopy(occupiedTiles, end, occupiedTiles, kept, occupiedCount - end);
+        occupiedCount = kept + occupiedCount - end;
+    }
+
+    private void senseTile(int tile) {
+        // Tiles that were never read can't have affected the tree yet, they are read when first needed
+        if (tileGeneration[tile] != generation)
+            return;
+
+        byte state = readTile(tile);
+        if (state == tileState[tile])
+            return;
+
+        // Moves into the tile and diagonal moves around its corners start or stop being possible, so every
+        // vertex with an edge that depends on it needs its rhs recalculated
+        setTileState(tile, state);
+        int x = tile % width;
+        int y = tile / width;
+        for (int dir = 0; dir < DX.length; dir++) {
+            int nx = x + DX[dir];
+            int ny = y + DY[dir];
+            if (nx >= 0 && ny >= 0 && nx < width && ny < height)
+                updateVertex(ny * width + nx);
+        }
+    }
+
+    private void computeShortestPath() {
+        // Stops once the start is consistent and nothing queued could still lower its cost
+        while (!openList.isEmpty() && nodesExpanded < MAX_EXPANSIONS
+                && (openList.peekKey() <= calculateKey(start) || getRhs(start) != getG(start))) {
+            double oldKey = openList.peekKey();
+            int u = openList.poll();
+            double newKey = calculateKey(u);
+            nodesExpanded++;
+
+            if (oldKey < newKey) {
+                // Queued before the unit moved on, the key only grew since then
+                openList.add(u, newKey);
+            } else if (getG(u) > getRhs(u)) {
+                g[u] = rhs[u];
+                updateNeighbors(u);
+            } else {
+                g[u] = INFINITY;
+                updateVertex(u);
+                updateNeighbors(u);
+            }
+        }
+    }
+
+    private void updateNeighbors(int u) {
+        int x = u % width;
+        int y = u / width;
+        for (int dir = 0; dir < DX.length; dir++) {
+            int nx = x + DX[dir];
+            int ny = y + DY[dir];
+            if (nx >= 0 && ny >= 0 && nx < width && ny < height)
+                updateVertex(ny * width + nx);
+        }
+    }
+
+    private void updateVertex(int u) {
+        touch(u);
+        double best = isGoal(u) ? getGoalPenalty(u) : INFINITY;
+        int x = u % width;
+        int y = u / width;
+        for (int dir = 0; dir < DX.length; dir++) {
+            double stepCost = getStepCost(x, y, dir);
+            if (stepCost == INFINITY)
+                continue;
+            int v = (y + DY[dir]) * width + x + DX[dir];
+            double gv = getG(v);
+            if (gv != INFINITY && stepCost + gv < best)
+                best = stepCost + gv;
+        }
+        rhs[u] = best;
+
+        boolean isQueued = openList.contains(u);
+        if (g[u] != rhs[u]) {
+            if (isQueued)
+                openList.updateKey(u, calculateKey(u));
+            else
+                openList.add(u, calculateKey(u));
+        } else if (isQueued)
+            openList.remove(u);
+    }
+
+    private ArrayList<Point> extractPath() {
+        if (getG(start) == INFINITY && getRhs(start) == INFINITY)
+            return null;
+
+        ArrayList<Point> path = new ArrayList<>();
+        int current = start;
+        for (int steps = 0; steps < width * height; steps++) {
+            int x = current % width;
+            int y = current / width;
+            int bestNext = -1;
+            double best = INFINITY;
+            for (int dir = 0; dir < DX.length; dir++) {
+                double stepCost = getStepCost(x, y, dir);
+                if (stepCost == INFINITY)
+                    continue;
+                int v = (y + DY[dir]) * width + x + DX[dir];
+                double gv = getG(v);
+                if (gv != INFINITY && stepCost + gv < best) {
+                    best = stepCost + gv;
+                    bestNext = v;
+                }
+            }
+
+            if (isGoal(current) && getGoalPenalty(current) <= best)
+                return path;
+            if (bestNext == -1)
+                return null;
+
+            current = bestNext;
+            path.add(new Point(current % width, current / width));
+        }
+        return null;
+    }
+
+    private double getStepCost(int x, int y, int dir) {
+        // Same moves as the search engine, diagonals need one of the two cardinal tiles beside them open
+        int nx = x + DX[dir];
+        int ny = y + DY[dir];
+        if (nx < 0 || ny < 0 || nx >= width || ny >= height || !isOpen(ny * width + nx))
+            return INFINITY;
+        if (dir < 4)
+            return 1;
+        if (!isOpen(y * width + nx) && !isOpen(ny * width + x))
+            return INFINITY;
+        return DIAGONAL_COST;
+    }
+
+    private boolean isOpen(int tile) {
+        if (tileGeneration[tile] != generation)
+            setTileState(tile, readTile(tile));
+        return tileState[tile] == TILE_OPEN;
+    }
+
+    private void setTileState(int tile, byte state) {
+        boolean wasOccupied = tileGeneration[tile] == generation && tileState[tile] == TILE_OCCUPIED;
+        if (state == TILE_OCCUPIED && !wasOccupied) {
+            if (occupiedCount == occupiedTiles.length)
+                occupiedTiles = Arrays.copyOf(occupiedTiles, occupiedCount * 2);
+            occupiedTiles[occupiedCount++] = tile;
+        }
+        tileGeneration[tile] = generation;
+        tileState[tile] = state;
+    }
+
+    private byte readTile(int tile) {
+        // Same answer as AStar.isTileOpen, split by whether the tile stays blocked
+        int x = tile % width;
+        int y = tile / width;
+        if (!AStar.isTileStaticallyOpen(x, y, play))
+            return TILE_BLOCKED;
+        return play.isTileBlockedOrReserved(x, y, null) ? TILE_OCCUPIED : TILE_OPEN;
+    }
+
+    private double calculateKey(int u) {
+        // D* Lite orders by [min(g, rhs) + h + km, min(g, rhs)]. The second component only breaks ties, so it is
+        // folded into the first scaled down far below any difference in path cost
+        double minCost = Math.min(getG(u), getRhs(u));
+        if (minCost == INFINITY)
+            return INFINITY;
+        return minCost + getDistance(start, u) + km + minCost * TIE_BREAK_SCALE;
+    }
+
+    private void touch(int u) {
+        if (vertexGeneration[u] != generation) {
+            vertexGeneration[u] = generation;
+            g[u] = INFINITY;
+            rhs[u] = INFINITY;
+        }
+    }
+
+    private double getG(int u) {
+        return vertexGeneration[u] == generation ? g[u] : INFINITY;
+    }
+
+    private double getRhs(int u) {
+        return vertexGeneration[u] == generation ? rhs[u] : INFINITY;
+    }
+
+    private boolean isGoal(int u) {
+        return goalGeneration[u] == generation;
+    }
+
+    private double getGoalPenalty(int u) {
+        double penalty = INFINITY;
+        for (int i = 0; i < goalCount; i++)
+            if (goals[i] == u)
+                penalty = Math.min(penalty, goalPenalties[i]);
+        return penalty;
+    }
+
+    private double getDistance(int from, int to) {
+        double xDist = from % width - to % width;
+        double yDist = from / width - to / width;
+        return Math.sqrt(xDist * xDist + yDist * yDist);
+    }
+
+    public boolean hasGoal(long goalKey) {
+        return this.goalKey == goalKey;
+    }
+
+    public void clear() {
+        // The next replan starts a new tree whatever its goal
+        goalKey = -1;
+    }
+
+    public boolean wasCutOff() {
+        // Whether the last replan gave up before finding out if there is a path
+        return cutOff;
+    }
+
+    public int getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+}
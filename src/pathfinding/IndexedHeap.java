@@ -0,0 +1,127 @@
+package pathfinding;
+
+import java.util.Arrays;
+
+public class IndexedHeap {
+
+    // Binary min-heap of node indexes keyed by fCost. Each node's position in the heap is tracked
+    // so that a cheaper route to an open node can be applied in place instead of remove + add
+    private int[] heap;
+    private int[] positions;
+    private double[] keys;
+    private int size;
+
+    public IndexedHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.keys = new double[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    public void add(int node, double key) {
+        keys[node] = key;
+        heap[size] = node;
+        positions[node] = size;
+        siftUp(size++);
+    }
+
+    public int poll() {
+        int top = heap[0];
+        positions[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    public void decreaseKey(int node, double key) {
+        keys[node] = key;
+        siftUp(positions[node]);
+    }
+
+    public void updateKey(int node, double key) {
+        double oldKey = keys[node];
+        keys[node] = key;
+        if (key < oldKey)
+            siftUp(positions[node]);
+        else
+            siftDown(positions[node]);
+    }
+
+    public void remove(int node) {
+        int idx = positions[node];
+        positions[node] = -1;
+        size--;
+        if (idx == size)
+            return;
+        int last = heap[size];
+        heap[idx] = last;
+        positions[last] = idx;
+        siftDown(idx);
+        siftUp(positions[last]);
+    }
+
+    public boolean contains(int node) {
+        return positions[node] != -1;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            positions[heap[i]] = -1;
+        size = 0;
+    }
+
+    public double peekKey() {
+        return keys[heap[0]];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void siftUp(int idx) {
+        int node = heap[idx];
+        double key = keys[node];
+        while (idx > 0) {
+            int parentIdx = (idx - 1) >> 1;
+            int parent = heap[parentIdx];
+            if (keys[parent] <= key)
+                break;
+            heap[idx] = parent;
+            positions[parent] = idx;
+            idx = parentIdx;
+        }
+        heap[idx] = node;
+        positions[node] = idx;
+    }
+
+    private void siftDown(int idx) {
+        int node = heap[idx];
+        double key = keys[node];
+        int half = size >> 1;
+        while (idx < half) {
+            int childIdx = (idx << 1) + 1;
+            int child = heap[childIdx];
+            int rightIdx = childIdx + 1;
+            if (rightIdx < size && keys[heap[rightIdx]] < keys[child]) {
+                childIdx = rightIdx;
+                child = heap[childIdx];
+            }
+            if (key <= keys[child])
+                break;
+            heap[idx] = child;
+            positions[child] = idx;
+            idx = childIdx;
+        }
+        heap[idx] = node;
+        positions[node] = idx;
+    }
+
+}
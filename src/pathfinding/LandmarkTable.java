@@ -0,0 +1,195 @@
+package pathfinding;
+
+import gamestates.Play;
+
+import java.util.Arrays;
+
+import static pathfinding.SearchEngine.DIAGONAL_COST;
+
+public class LandmarkTable {
+
+    private static final int NUM_LANDMARKS = 8;
+    // Distances are stored exactly, as (cardinal steps << 16) | diagonal steps
+    private static final int UNREACHED = -1;
+
+    // Up, Right, Down, Left, then Top-left, Top-right, Bottom-left, Bottom-right
+    private static final int[] DX = {0, 1, 0, -1, -1, 1, -1, 1};
+    private static final int[] DY = {-1, 0, 1, 0, -1, -1, 1, 1};
+
+    // Distances over static tiles from a few landmarks spread across the map. By the triangle inequality
+    // |d(L, goal) - d(L, tile)| never overestimates the distance from tile to goal, and unlike a straight line it
+    // knows about water and walls in the way. Units and reservations only make real paths longer, so it stays
+    // admissible for every search
+    private Play play;
+    private int width, height;
+    private int numLandmarks;
+    private int[] landmarks;
+    // Tile major, the distances from every landmark to one tile sit next to each other
+    private int[] distances;
+    private IndexedHeap openList;
+
+    public LandmarkTable(Play play) {
+        this.play = play;
+        this.width = play.getMap().getTileData()[0].length;
+        this.height = play.getMap().getTileData().length;
+        this.landmarks = new int[NUM_LANDMARKS];
+        this.distances = new int[width * height * NUM_LANDMARKS];
+        this.openList = new IndexedHeap(width * height);
+        Arrays.fill(distances, UNREACHED);
+        selectLandmarks();
+    }
+
+    private void selectLandmarks() {
+        // Farthest point selection: each landmark is the tile farthest from all landmarks picked so far
+        RegionMap regionMap = play.getRegionMap();
+        int seed = -1;
+        for (int tile = 0; tile < width * height && seed == -1; tile++)
+            if (regionMap.getLabel(tile % width, tile / width) != 0)
+                seed = tile;
+        if (seed == -1)
+            return;
+
+        double[] nearest = new double[width * height];
+        Arrays.fill(nearest, Double.MAX_VALUE);
+        // The first pass from an arbitrary tile only finds a far corner to start from
+        landmarks[0] = seed;
+        build(0);
+        int next = farthest(0, nearest);
+        Arrays.fill(nearest, Double.MAX_VALUE);
+        Arrays.fill(distances, UNREACHED);
+
+        while (numLandmarks < NUM_LANDMARKS && next != -1) {
+            landmarks[numLandmarks] = next;
+            build(numLandmarks);
+            next = farthest(numLandmarks++, nearest);
+        }
+    }
+
+    private int farthest(int landmark, double[] nearest) {
+        int farthest = -1;
+        double best = 0;
+        for (int tile = 0; tile < width * height; tile++) {
+            int distance = distances[tile * NUM_LANDMARKS + landmark];
+            if (distance == UNREACHED)
+                continue;
+            nearest[tile] = Math.min(nearest[tile], decode(distance));
+            if (nearest[tile] > best) {
+                best = nearest[tile];
+                farthest = tile;
+            }
+        }
+        return farthest;
+    }
+
+    private void build(int landmark) {
+        int source = landmarks[landmark];
+        distances[source * NUM_LANDMARKS + landmark] = 0;
+        openList.add(source, 0);
+        propagate(landmark);
+    }
+
+    private void propagate(int landmark) {
+        // Dijkstra that only ever lowers distances, used both for the first build and after tiles open up
+        RegionMap regionMap = play.getRegionMap();
+        while (!openList.isEmpty()) {
+            int current = openList.poll();
+            int x = current % width;
+            int y = current / width;
+            int distance = distances[current * NUM_LANDMARKS + landmark];
+
+            for (int dir = 0; dir < DX.length; dir++) {
+                int nx = x + DX[dir];
+                int ny = y + DY[dir];
+                if (!canStep(regionMap, x, y, nx, ny))
+                    continue;
+
+                int next = ny * width + nx;
+                int newDistance = distance + (dir < 4 ? 1 << 16 : 1);
+                int oldDistance = distances[next * NUM_LANDMARKS + landmark];
+                if (oldDistance == UNREACHED || decode(newDistance) < decode(oldDistance)) {
+                    distances[next * NUM_LANDMARKS + landmark] = newDistance;
+                    if (openList.contains(next))
+                        openList.decreaseKey(next, decode(newDistance));
+                    else
+                        openList.add(next, decode(newDistance));
+                }
+            }
+        }
+    }
+
+    public void tilesChanged(int tileX, int tileY, int tileWidth, int tileHeight) {
+        // Blocking tiles can only lengthen real paths, so the old distances stay valid lower bounds. Opening tiles
+        // can shorten them, which is repaired by pulling the opened tiles and their neighbors down to what their
+        // neighbors allow and letting any improvement spread
+        RegionMap regionMap = play.getRegionMap();
+        for (int landmark = 0; landmark < numLandmarks; landmark++) {
+            for (int y = Math.max(0, tileY - 1); y <= Math.min(height - 1, tileY + tileHeight); y++)
+                for (int x = Math.max(0, tileX - 1); x <= Math.min(width - 1, tileX + tileWidth); x++) {
+                    if (regionMap.getLabel(x, y) == 0)
+                        continue;
+                    int tile = y * width + x;
+                    pullFromNeighbors(regionMap, tile, landmark);
+                    int distance = distances[tile * NUM_LANDMARKS + landmark];
+                    if (distance != UNREACHED && !openList.contains(tile))
+                        openList.add(tile, decode(distance));
+                }
+            propagate(landmark);
+        }
+    }
+
+    private void pullFromNeighbors(RegionMap regionMap, int tile, int landmark) {
+        int x = tile % width;
+        int y = tile / width;
+        for (int dir = 0; dir < DX.length; dir++) {
+            int nx = x + DX[dir];
+            int ny = y + DY[dir];
+            if (!canStep(regionMap, x, y, nx, ny))
+                continue;
+            int neighborDistance = distances[(ny * width + nx) * NUM_LANDMARKS + landmark];
+            if (neighborDistance == UNREACHED)
+                continue;
+            int newDistance = neighborDistance + (dir < 4 ? 1 << 16 : 1);
+            int oldDistance = distances[tile * NUM_LANDMARKS + landmark];
+            if (oldDistance == UNREACHED || decode(newDistance) < decode(oldDistance))
+                distances[tile * NUM_LANDMARKS + landmark] = newDistance;
+        }
+    }
+
+    private boolean canStep(RegionMap regionMap, int x, int y, int nx, int ny) {
+        // Same moves as the search engine, diagonals need one of the two cardinal tiles beside them open
+        if (nx < 0 || ny < 0 || nx >= width || ny >= height || regionMap.getLabel(nx, ny) == 0)
+            return false;
+        return nx == x || ny == y || regionMap.getLabel(nx, y) != 0 || regionMap.getLabel(x, ny) != 0;
+    }
+
+    public void getDistances(int tile, double[] out, int offset) {
+        // Copies the distance from every landmark to the tile, -1 where a landmark never reached it
+        for (int landmark = 0; landmark < numLandmarks; landmark++) {
+            int distance = distances[tile * NUM_LANDMARKS + landmark];
+            out[offset + landmark] = distance == UNREACHED ? -1 : decode(distance);
+        }
+    }
+
+    public double getLowerBound(int tile, double[] goalDistances, int offset) {
+        // Lower bound on the distance from the tile to a goal, given the goal's distances from getDistances
+        double bound = 0;
+        int base = tile * NUM_LANDMARKS;
+        for (int landmark = 0; landmark < numLandmarks; landmark++) {
+            int distance = distances[base + landmark];
+            double goalDistance = goalDistances[offset + landmark];
+            if (distance == UNREACHED || goalDistance < 0)
+                continue;
+            bound = Math.max(bound, Math.abs(goalDistance - decode(distance)));
+        }
+        return bound;
+    }
+
+    private static double decode(int distance) {
+        return (distance >>> 16) + (distance & 0xFFFF) * DIAGONAL_COST;
+    }
+
+    public int getNumLandmarks() {
+        return numLandmarks;
+    }
+
+}
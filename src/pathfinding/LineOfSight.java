@@ -0,0 +1,94 @@
+package pathfinding;
+
+import gamestates.Play;
+
+public class LineOfSight {
+
+    // Answers are remembered in a direct mapped table by a hash of the two tiles, a colliding pair simply replaces
+    // the one before it. An answer is only trusted during the tick it was traced in
+    private static final int MEMO_SIZE = 1 << 12;
+
+    // A line is traced one cardinal step at a time, always onto the neighbor nearest the target, so it passes
+    // through every tile the straight line between the two tile middles touches. On an exact tie, such as a
+    // perfect diagonal, either tile being open is enough. The start and target tiles never block, whatever stands
+    // on them. Blockers are read through Play.isTileBlockedOrReserved, which answers from the occupancy grid
+    private Play play;
+    private int width, height;
+    private long[] memoKeys = new long[MEMO_SIZE];
+    private int[] memoTicks = new int[MEMO_SIZE];
+    private boolean[] memoResults = new boolean[MEMO_SIZE];
+    private int tick = 1;
+
+    public LineOfSight(Play play) {
+        this.play = play;
+        this.width = play.getMap().getTileData()[0].length;
+        this.height = play.getMap().getTileData().length;
+    }
+
+    public void update() {
+        tick++;
+    }
+
+    public void tilesChanged() {
+        // Buildings can be placed while the game is paused, so nothing remembered can be trusted after one
+        tick++;
+    }
+
+    public boolean isOpen(int fromX, int fromY, int toX, int toY) {
+        long key = ((long) (fromY * width + fromX) << 32) | (toY * width + toX);
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 52) & (MEMO_SIZE - 1);
+        if (memoTicks[slot] == tick && memoKeys[slot] == key)
+            return memoResults[slot];
+
+        boolean isOpen = trace(fromX, fromY, toX, toY);
+        memoKeys[slot] = key;
+        memoTicks[slot] = tick;
+        memoResults[slot] = isOpen;
+        return isOpen;
+    }
+
+    private boolean trace(int x, int y, int toX, int toY) {
+        while (x != toX || y != toY) {
+            // The nearest of the neighbors up, right, down and left, and the second one if it is exactly as near
+            int nearest = -1, tied = -1;
+            int nearestDistance = Integer.MAX_VALUE;
+            for (int dir = 0; dir < 4; dir++) {
+                int nextX = x + getDirX(dir);
+                int nextY = y + getDirY(dir);
+                if (nextX < 0 || nextY < 0 || nextX >= width || nextY >= height)
+                    continue;
+                int distance = (toX - nextX) * (toX - nextX) + (toY - nextY) * (toY - nextY);
+                if (distance < nearestDistance) {
+                    nearestDistance = distance;
+                    nearest = dir;
+                    tied = -1;
+                } else if (distance == nearestDistance)
+                    tied = dir;
+            }
+
+            if (nearest == -1)
+                return false;
+            if (nearestDistance == 0)
+                return true;
+
+            if (!play.isTileBlockedOrReserved(x + getDirX(nearest), y + getDirY(nearest), null)) {
+                x += getDirX(nearest);
+                y += getDirY(nearest);
+            } else if (tied != -1 && !play.isTileBlockedOrReserved(x + getDirX(tied), y + getDirY(tied), null)) {
+                x += getDirX(tied);
+                y += getDirY(tied);
+            } else
+                return false;
+        }
+        return true;
+    }
+
+    private static int getDirX(int dir) {
+        return dir == 1 ? 1 : dir == 3 ? -1 : 0;
+    }
+
+    private static int getDirY(int dir) {
+        return dir == 0 ? -1 : dir == 2 ? 1 : 0;
+    }
+
+}
@@ -0,0 +1,34 @@
+package pathfinding;
+
+import gamestates.Play;
+
+public class LiveTileGrid implements TileGrid {
+
+    // Reads the game state directly, so it must only be used from the update thread
+    private Play play;
+
+    public void setPlay(Play play) {
+        this.play = play;
+    }
+
+    @Override
+    public boolean isOpen(int tileX, int tileY) {
+        return AStar.isTileOpen(tileX, tileY, play);
+    }
+
+    @Override
+    public LandmarkTable getLandmarks() {
+        return play.getLandmarkTable();
+    }
+
+    @Override
+    public int getWidth() {
+        return play.getMap().getTileData()[0].length;
+    }
+
+    @Override
+    public int getHeight() {
+        return play.getMap().getTileData().length;
+    }
+
+}
@@ -0,0 +1,106 @@
+package pathfinding;
+
+import entities.units.Unit;
+import gamestates.Play;
+
+import java.awt.*;
+import java.util.Arrays;
+
+import static main.Game.*;
+
+public class OccupancyGrid {
+
+    // Each tile packs whether a building or resource stands on it into the low bits and how many units overlap it
+    // into the rest, so a tile is blocked exactly when its word is not zero
+    private static final int BUILDING_BIT = 1;
+    private static final int RESOURCE_BIT = 2;
+    private static final int UNIT_COUNT_SHIFT = 2;
+    private static final int NOT_COUNTED = -1;
+
+    // Kept up to date as buildings are built or destroyed, resources run out, and units move between tiles,
+    // spawn, die or go inside buildings. Units overlap every tile their hitbox touches, the same as
+    // UnitHandler.getUnitAtTile, so a unit walking between two tiles blocks both until they arrive
+    private Play play;
+    private int width, height;
+    private int[] tiles;
+    // The tiles each unit was last counted on, by unit id, see getUnitTiles
+    private int[] unitTiles = new int[64];
+
+    public OccupancyGrid(Play play) {
+        this.play = play;
+        this.width = play.getMap().getTileData()[0].length;
+        this.height = play.getMap().getTileData().length;
+        this.tiles = new int[width * height];
+        Arrays.fill(unitTiles, NOT_COUNTED);
+
+        staticTilesChanged(0, 0, width, height);
+        for (Unit u : play.getUnitHandler().getUnits())
+            unitChanged(u);
+    }
+
+    public void staticTilesChanged(int tileX, int tileY, int tileWidth, int tileHeight) {
+        // Rereads buildings and resources over the area, keeping the unit counts
+        for (int y = Math.max(0, tileY); y < Math.min(height, tileY + tileHeight); y++)
+            for (int x = Math.max(0, tileX); x < Math.min(width, tileX + tileWidth); x++) {
+                int tile = y * width + x;
+                tiles[tile] &= ~(BUILDING_BIT | RESOURCE_BIT);
+                if (play.getBuildingHandler().getBuildingAtTile(x, y) != null)
+                    tiles[tile] |= BUILDING_BIT;
+                if (play.getResourceObjectData()[y][x] != null)
+                    tiles[tile] |= RESOURCE_BIT;
+            }
+    }
+
+    public void unitChanged(Unit u) {
+        // Moves the unit's count to the tiles they overlap now, or takes it away if they are no longer active
+        int id = u.getId();
+        if (id >= unitTiles.length) {
+            int oldLength = unitTiles.length;
+            unitTiles = Arrays.copyOf(unitTiles, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(unitTiles, oldLength, unitTiles.length, NOT_COUNTED);
+        }
+
+        int newTiles = u.isActive() ? getUnitTiles(u.getHitbox()) : NOT_COUNTED;
+        if (newTiles == unitTiles[id])
+            return;
+        if (unitTiles[id] != NOT_COUNTED)
+            addUnit(unitTiles[id], -1);
+        if (newTiles != NOT_COUNTED)
+            addUnit(newTiles, 1);
+        unitTiles[id] = newTiles;
+    }
+
+    private int getUnitTiles(Rectangle hitbox) {
+        // The first tile the hitbox touches on each axis, doubled, plus one if it reaches into the next tile
+        int pixelY = hitbox.y - toPixelY(0);
+        int firstX = Math.floorDiv(hitbox.x, TILE_SIZE);
+        int firstY = Math.floorDiv(pixelY, TILE_SIZE);
+        int lastX = Math.floorDiv(hitbox.x + hitbox.width - 1, TILE_SIZE);
+        int lastY = Math.floorDiv(pixelY + hitbox.height - 1, TILE_SIZE);
+        return ((firstX * 2 + (lastX - firstX)) << 16) | (firstY * 2 + (lastY - firstY));
+    }
+
+    private void addUnit(int unitTiles, int change) {
+        int firstX = (unitTiles >> 16) / 2;
+        int firstY = (unitTiles & 0xFFFF) / 2;
+        int lastX = firstX + (unitTiles >> 16) % 2;
+        int lastY = firstY + (unitTiles & 0xFFFF) % 2;
+        for (int y = Math.max(0, firstY); y <= Math.min(height - 1, lastY); y++)
+            for (int x = Math.max(0, firstX); x <= Math.min(width - 1, lastX); x++)
+                tiles[y * width + x] += change << UNIT_COUNT_SHIFT;
+    }
+
+    public boolean isBlocked(int tileX, int tileY) {
+        return tiles[tileY * width + tileX] != 0;
+    }
+
+    public boolean isStaticallyBlocked(int tileX, int tileY) {
+        // Only buildings and resources, see AStar.isTileStaticallyOpen
+        return (tiles[tileY * width + tileX] & (BUILDING_BIT | RESOURCE_BIT)) != 0;
+    }
+
+    public boolean hasUnit(int tileX, int tileY) {
+        return tiles[tileY * width + tileX] >>> UNIT_COUNT_SHIFT != 0;
+    }
+
+}
@@ -0,0 +1,98 @@
+package pathfinding;
+
+import java.awt.*;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Path implements Serializable {
+
+    // Saved with the unit it belongs to. Unit.path was an ArrayList<Point> before, and games saved back then no longer
+    // load, SaveFileHandler leaves them out of the list
+    private static final long serialVersionUID = 1L;
+
+    // A unit's remaining tiles, packed as (tileX << 16) | tileY into one int each instead of a Point object.
+    // Tiles are consumed from the front by advancing a cursor, so popping the next tile never shifts the rest
+    private int[] tiles;
+    private int cursor;
+
+    private Path(int[] tiles) {
+        this.tiles = tiles;
+    }
+
+    public static Path of(List<Point> points) {
+        return of(null, points);
+    }
+
+    public static Path of(Point first, List<Point> points) {
+        // Packs the points behind the first tile, which is left out when null. Null points stay null, so "no path"
+        // reads the same either way
+        if (points == null)
+            return null;
+        int offset = first == null ? 0 : 1;
+        int[] tiles = new int[points.size() + offset];
+        if (first != null)
+            tiles[0] = (first.x << 16) | first.y;
+        for (int i = 0; i < points.size(); i++) {
+            Point p = points.get(i);
+            tiles[i + offset] = (p.x << 16) | p.y;
+        }
+        return new Path(tiles);
+    }
+
+    public void pop() {
+        cursor++;
+    }
+
+    public void truncate(int size) {
+        // Keeps only the next size tiles, dropping the already consumed ones with the rest
+        int[] kept = new int[Math.min(size, size())];
+        System.arraycopy(tiles, cursor, kept, 0, kept.length);
+        tiles = kept;
+        cursor = 0;
+    }
+
+    public Path append(Path next) {
+        // A new path of this one's remaining tiles followed by the next one's
+        int[] joined = new int[size() + next.size()];
+        System.arraycopy(tiles, cursor, joined, 0, size());
+        System.arraycopy(next.tiles, next.cursor, joined, size(), next.size());
+        return new Path(joined);
+    }
+
+    public int getX(int index) {
+        return tiles[cursor + index] >>> 16;
+    }
+
+    public int getY(int index) {
+        return tiles[cursor + index] & 0xFFFF;
+    }
+
+    public Point get(int index) {
+        return new Point(getX(index), getY(index));
+    }
+
+    public Point getLast() {
+        return get(size() - 1);
+    }
+
+    public boolean isAt(int index, Point tile) {
+        return getX(index) == tile.x && getY(index) == tile.y;
+    }
+
+    public ArrayList<Point> toList() {
+        ArrayList<Point> points = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++)
+            points.add(get(i));
+        return points;
+    }
+
+    public int size() {
+        return tiles.length - cursor;
+    }
+
+    public boolean isEmpty() {
+        return cursor == tiles.length;
+    }
+
+}
@@ -0,0 +1,148 @@
+package pathfinding;
+
+import gamestates.Play;
+import objects.Chunk;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PathCache {
+
+    private static final int MAX_ENTRIES = 512;
+
+    // Least recently used cache of finished paths, keyed by start tile and goal tile. Each entry remembers the version
+    // of every chunk it passes through, and those versions are bumped whenever a tile in the chunk changes blocked state.
+    // Chunks are the map's own, and a diagonal step also depends on the chunks of the two corner tiles it cuts past
+    private int width, height, numChunksX;
+    private int[] chunkXOfTile, chunkYOfTile;
+    private int[] chunkVersions;
+    private LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private long hits, misses, invalidations;
+
+    private static class Entry {
+        private ArrayList<Point> path;
+        private int[] chunks;
+        private int[] versions;
+    }
+
+    public PathCache(Play play) {
+        Chunk[][] chunks = play.getMap().getChunks();
+        this.width = play.getMap().getTileData()[0].length;
+        this.height = play.getMap().getTileData().length;
+        this.numChunksX = chunks[0].length;
+        this.chunkVersions = new int[numChunksX * chunks.length];
+
+        chunkXOfTile = new int[width];
+        chunkYOfTile = new int[height];
+        for (int chunkX = 0; chunkX < numChunksX; chunkX++) {
+            Chunk c = chunks[0][chunkX];
+            for (int x = c.getxStart(); x < c.getxStart() + c.getTileWdith(); x++)
+                chunkXOfTile[x] = chunkX;
+        }
+        for (int chunkY = 0; chunkY < chunks.length; chunkY++) {
+            Chunk c = chunks[chunkY][0];
+            for (int y = c.getyStart(); y < c.getyStart() + c.getTileHeight(); y++)
+                chunkYOfTile[y] = chunkY;
+        }
+    }
+
+    public ArrayList<Point> get(Point start, Point goal, boolean isAdjacentGoal) {
+        // Returns a copy of the cached path, or null if there is none or a chunk it crossed has changed since
+        long key = getKey(start, goal, isAdjacentGoal);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+
+        for (int i = 0; i < entry.chunks.length; i++)
+            if (chunkVersions[entry.chunks[i]] != entry.versions[i]) {
+                entries.remove(key);
+                invalidations++;
+                misses++;
+                return null;
+            }
+
+        hits++;
+        return new ArrayList<>(entry.path);
+    }
+
+    public void put(Point start, Point goal, boolean isAdjacentGoal, ArrayList<Point> path) {
+        int[] chunks = new int[3 * path.size() + 1];
+        int numChunks = 0;
+        chunks[numChunks++] = getChunk(start.x, start.y);
+        Point previous = start;
+        for (Point p : path) {
+            // Consecutive tiles mostly share a chunk. A chunk entered twice is simply checked twice
+            if (p.x != previous.x && p.y != previous.y) {
+                numChunks = addChunk(chunks, numChunks, getChunk(p.x, previous.y));
+                numChunks = addChunk(chunks, numChunks, getChunk(previous.x, p.y));
+            }
+            numChunks = addChunk(chunks, numChunks, getChunk(p.x, p.y));
+            previous = p;
+        }
+
+        Entry entry = new Entry();
+        entry.path = new ArrayList<>(path);
+        entry.chunks = new int[numChunks];
+        entry.versions = new int[numChunks];
+        for (int i = 0; i < numChunks; i++) {
+            entry.chunks[i] = chunks[i];
+            entry.versions[i] = chunkVersions[chunks[i]];
+        }
+        entries.put(getKey(start, goal, isAdjacentGoal), entry);
+    }
+
+    private int addChunk(int[] chunks, int numChunks, int chunk) {
+        if (chunk != chunks[numChunks - 1])
+            chunks[numChunks++] = chunk;
+        return numChunks;
+    }
+
+    public void tilesChanged(int tileX, int tileY, int tileWidth, int tileHeight) {
+        int lastChunkX = chunkXOfTile[Math.min(width - 1, tileX + tileWidth - 1)];
+        int lastChunkY = chunkYOfTile[Math.min(height - 1, tileY + tileHeight - 1)];
+        for (int chunkY = chunkYOfTile[Math.max(0, tileY)]; chunkY <= lastChunkY; chunkY++)
+            for (int chunkX = chunkXOfTile[Math.max(0, tileX)]; chunkX <= lastChunkX; chunkX++)
+                chunkVersions[chunkY * numChunksX + chunkX]++;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private int getChunk(int tileX, int tileY) {
+        return chunkYOfTile[tileY] * numChunksX + chunkXOfTile[tileX];
+    }
+
+    private long getKey(Point start, Point goal, boolean isAdjacentGoal) {
+        long startTile = start.y * width + start.x;
+        long goalTile = goal.y * width + goal.x;
+        return (startTile << 32) | (goalTile << 1) | (isAdjacentGoal ? 1 : 0);
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+}
@@ -0,0 +1,212 @@
+package pathfinding;
+
+import entities.units.Unit;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+
+public class PathRequest {
+
+    // Priorities, lower is served first
+    public static final int PRIORITY_COMMAND = 0;
+    public static final int PRIORITY_AUTOMATIC = 1;
+
+    public interface Callback {
+        // Path is null when no goal could be reached. Tag is the tag of the goal the path ends at, or -1 when the
+        // search was cut off by its limits and the path only leads towards the goals
+        void pathFound(Path path, int tag);
+    }
+
+    private Unit unit;
+    private Point start;
+    private int searchMode;
+    private int priority;
+    private long sequence;
+    private Callback callback;
+    private boolean cancelled;
+
+    private int[] goals = new int[8];
+    private double[] goalPenalties = new double[8];
+    private int[] goalTags = new int[8];
+    private int goalCount;
+
+    // A single far away goal is first planned over the chunk graph, see AStar.hierarchicalPathFind.
+    // If the chunk waypoint can't be reached the search is retried towards the fallback goal
+    private Point hierarchicalGoal;
+    private Point fallbackGoal;
+
+    // Goal tile the finished path is cached under, see PathCache
+    private Point cacheGoal;
+
+    // Searched from the last tile of the unit's path, which they keep walking while they wait, see
+    // AStar.requestUnitPathOnward. The found path doesn't start with the unit's next tile
+    private boolean onward;
+
+    private int maxExpansions = SearchEngine.DEFAULT_MAX_EXPANSIONS;
+    private long maxNanos = SearchEngine.DEFAULT_MAX_NANOS;
+    private boolean cutOff;
+
+    // Requests merged into this one by the queue, they are handed this request's path once it is found
+    private ArrayList<PathRequest> followers;
+
+    public PathRequest(Unit unit, Point start, int searchMode, int priority, Callback callback) {
+        this.unit = unit;
+        this.start = start;
+        this.searchMode = searchMode;
+        this.priority = priority;
+        this.callback = callback;
+    }
+
+    public void addGoal(int tile, double penalty, int tag) {
+        if (goalCount == goals.length) {
+            goals = Arrays.copyOf(goals, goalCount * 2);
+            goalPenalties = Arrays.copyOf(goalPenalties, goalCount * 2);
+            goalTags = Arrays.copyOf(goalTags, goalCount * 2);
+        }
+        goals[goalCount] = tile;
+        goalPenalties[goalCount] = penalty;
+        goalTags[goalCount] = tag;
+        goalCount++;
+    }
+
+    public boolean hasSameGoals(PathRequest other) {
+        // Whether both requests are after the same goal tiles. Penalties are left out, goals next to a target charge
+        // by distance from the start, so they only differ by how far apart the two starts are
+        if (goalCount != other.goalCount || searchMode != other.searchMode || priority != other.priority
+                || maxExpansions != other.maxExpansions || maxNanos != other.maxNanos
+                || !Objects.equals(hierarchicalGoal, other.hierarchicalGoal) || !Objects.equals(cacheGoal, other.cacheGoal))
+            return false;
+        for (int i = 0; i < goalCount; i++)
+            if (goals[i] != other.goals[i] || goalTags[i] != other.goalTags[i])
+                return false;
+        return true;
+    }
+
+    public int getTag(int tile) {
+        for (int i = 0; i < goalCount; i++)
+            if (goals[i] == tile)
+                return goalTags[i];
+        return -1;
+    }
+
+    public void clearGoals() {
+        goalCount = 0;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled || (unit != null && !unit.isActive());
+    }
+
+    public Unit getUnit() {
+        return unit;
+    }
+
+    public Point getStart() {
+        return start;
+    }
+
+    public int getSearchMode() {
+        return searchMode;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public Callback getCallback() {
+        return callback;
+    }
+
+    public int[] getGoals() {
+        return goals;
+    }
+
+    public double[] getGoalPenalties() {
+        return goalPenalties;
+    }
+
+    public int getGoalCount() {
+        return goalCount;
+    }
+
+    public Point getHierarchicalGoal() {
+        return hierarchicalGoal;
+    }
+
+    public void setHierarchicalGoal(Point hierarchicalGoal) {
+        this.hierarchicalGoal = hierarchicalGoal;
+    }
+
+    public Point getFallbackGoal() {
+        return fallbackGoal;
+    }
+
+    public void setFallbackGoal(Point fallbackGoal) {
+        this.fallbackGoal = fallbackGoal;
+    }
+
+    public int getMaxExpansions() {
+        return maxExpansions;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public void setLimits(int maxExpansions, long maxNanos) {
+        this.maxExpansions = maxExpansions;
+        this.maxNanos = maxNanos;
+    }
+
+    public boolean isCutOff() {
+        return cutOff;
+    }
+
+    public void setCutOff(boolean cutOff) {
+        this.cutOff = cutOff;
+    }
+
+    public void addFollower(PathRequest follower) {
+        if (followers == null)
+            followers = new ArrayList<>();
+        followers.add(follower);
+    }
+
+    public ArrayList<PathRequest> removeFollowers() {
+        // Returns the followers, or null if there are none, and leaves none behind
+        ArrayList<PathRequest> removed = followers;
+        followers = null;
+        return removed;
+    }
+
+    public Point getCacheGoal() {
+        return cacheGoal;
+    }
+
+    public void setCacheGoal(Point cacheGoal) {
+        this.cacheGoal = cacheGoal;
+    }
+
+    public boolean isOnward() {
+        return onward;
+    }
+
+    public void setOnward(boolean onward) {
+        this.onward = onward;
+    }
+
+}
@@ -0,0 +1,343 @@
+package pathfinding;
+
+import entities.units.Unit;
+import gamestates.Play;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static pathfinding.PathRequest.PRIORITY_COMMAND;
+
+public class PathRequestQueue {
+
+    private static final int DEFAULT_MAX_EXPANSIONS_PER_TICK = 6000;
+    private static final long DEFAULT_MAX_NANOS_PER_TICK = 3_000_000;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    // How many nodes are expanded between deadline checks
+    private static final int EXPANSIONS_PER_SLICE = 256;
+    // Requests for the same goals from starts at most this many tiles apart are solved once
+    private static final int COALESCE_RADIUS = 3;
+
+    // Searches run a slice at a time across ticks so a burst of requests can't stall a single update.
+    // Player commands are served before automatic requests, and requests of equal priority in the order they came in.
+    // A batch solver can be set to instead solve each tick's requests together on worker threads. It is opt-in,
+    // through the parallel path solving debug toggle, since a batch ignores the per-tick budget and searches a
+    // fresh snapshot of the grid every tick
+    private Play play;
+    private SearchEngine searchEngine;
+    private BatchPathSolver batchSolver;
+    private PriorityQueue<PathRequest> requests = new PriorityQueue<>(
+            Comparator.comparingInt(PathRequest::getPriority).thenComparingLong(PathRequest::getSequence));
+    private PathRequest activeRequest;
+    private long nextSequence;
+    private long requestsCompleted, requestsCutOff, requestsCoalesced;
+
+    // Requests submitted since the last update. A new request for the same goals as one of these, from close by,
+    // waits for that request's path instead of being searched itself
+    private ArrayList<PathRequest> tickRequests = new ArrayList<>();
+
+    private int maxExpansionsPerTick = DEFAULT_MAX_EXPANSIONS_PER_TICK;
+    private long maxNanosPerTick = DEFAULT_MAX_NANOS_PER_TICK;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    public PathRequestQueue(Play play) {
+        this.play = play;
+        this.searchEngine = new SearchEngine(play.getMap().getTileData()[0].length, play.getMap().getTileData().length);
+    }
+
+    public void submit(PathRequest request) {
+        // The unit finishes the step it is on and then waits there for the result, unless the request continues on
+        // from the end of their path
+        Unit u = request.getUnit();
+        if (u != null) {
+            u.setPathRequest(request);
+            if (!request.isOnward() && u.getPath() != null && u.getPath().size() > 1)
+                u.truncatePath(1);
+        }
+        request.setSequence(nextSequence++);
+
+        PathRequest leader = findLeader(request);
+        if (leader != null) {
+            leader.addFollower(request);
+            requestsCoalesced++;
+            return;
+        }
+        tickRequests.add(request);
+        requests.add(request);
+    }
+
+    private PathRequest findLeader(PathRequest request) {
+        // A waiting request from the same region close to this one's start, with exactly the same goals
+        if (request.getUnit() == null)
+            return null;
+        Point start = request.getStart();
+        RegionMap regionMap = play.getRegionMap();
+        for (PathRequest other : tickRequests) {
+            Point otherStart = other.getStart();
+            if (other.getUnit() != null && !other.isCancelled()
+                    && Math.max(Math.abs(start.x - otherStart.x), Math.abs(start.y - otherStart.y)) <= COALESCE_RADIUS
+                    && regionMap.getLabel(start.x, start.y) == regionMap.getLabel(otherStart.x, otherStart.y)
+                    && request.hasSameGoals(other))
+                return other;
+        }
+        return null;
+    }
+
+    public void update() {
+        tickRequests.clear();
+        if (batchSolver != null)
+            updateBatch();
+        else
+            updateTimeSliced();
+    }
+
+    private void updateBatch() {
+        ArrayList<PathRequest> batch = new ArrayList<>();
+        while (batch.size() < maxBatchSize && !requests.isEmpty()) {
+            PathRequest request = requests.poll();
+            if (prepareRequest(request))
+                batch.add(request);
+        }
+        if (batch.isEmpty())
+            return;
+
+        List<ArrayList<Point>> paths = batchSolver.solve(batch, TileGridSnapshot.of(play), play.getReservationTable());
+        for (int i = 0; i < batch.size(); i++) {
+            ArrayList<Point> path = paths.get(i);
+            PathRequest request = batch.get(i);
+            Point end = (path == null || path.isEmpty()) ? request.getStart() : path.get(path.size() - 1);
+            completeRequest(request, path, path == null ? -1 : request.getTag(toIndex(end)));
+        }
+    }
+
+    private void updateTimeSliced() {
+        long deadline = System.nanoTime() + maxNanosPerTick;
+        int budget = maxExpansionsPerTick;
+
+        // A waiting player command takes over from an automatic search, which starts over once it is served again
+        if (activeRequest != null && activeRequest.getPriority() != PRIORITY_COMMAND && !requests.isEmpty()
+                && requests.peek().getPriority() == PRIORITY_COMMAND) {
+            searchEngine.finishSearch();
+            requests.add(activeRequest);
+            activeRequest = null;
+        }
+
+        while (budget > 0 && System.nanoTime() < deadline) {
+            if (activeRequest == null) {
+                PathRequest request = requests.poll();
+                if (request == null)
+                    break;
+                if (!prepareRequest(request))
+                    continue;
+                activeRequest = request;
+                startSearch();
+            }
+
+            if (activeRequest.isCancelled()) {
+                searchEngine.finishSearch();
+                releaseFollowers(activeRequest);
+                activeRequest = null;
+                continue;
+            }
+
+            int expandedBefore = searchEngine.getNodesExpanded();
+            boolean isDone = searchEngine.stepSearch(Math.min(budget, EXPANSIONS_PER_SLICE));
+            budget -= Math.max(1, searchEngine.getNodesExpanded() - expandedBefore);
+
+            if (isDone) {
+                activeRequest.setCutOff(searchEngine.wasCutOff());
+                int resultGoal = searchEngine.getResultGoal();
+                ArrayList<Point> path = searchEngine.finishSearch();
+                Point fallbackGoal = activeRequest.getFallbackGoal();
+                if (path == null && fallbackGoal != null) {
+                    // The chunk waypoint is taken by a unit, fall back to searching the whole way
+                    activeRequest.clearGoals();
+                    activeRequest.addGoal(toIndex(fallbackGoal), 0, 0);
+                    activeRequest.setFallbackGoal(null);
+                    startSearch();
+                    continue;
+                }
+                PathRequest request = activeRequest;
+                activeRequest = null;
+                completeRequest(request, path, path == null ? -1 : request.getTag(resultGoal));
+            }
+        }
+    }
+
+    private boolean prepareRequest(PathRequest request) {
+        // Resolves the request's goals, and returns false if it was settled without needing a search.
+        // Once a request leaves the queue nothing more can join it
+        tickRequests.remove(request);
+        if (request.isCancelled()) {
+            releaseFollowers(request);
+            return false;
+        }
+
+        Point start = request.getStart();
+        Point goal = request.getHierarchicalGoal();
+        if (goal != null) {
+            request.clearGoals();
+            request.setFallbackGoal(null);
+            if (play.getRegionMap().isReachable(start.x, start.y, goal.x, goal.y)) {
+                ChunkGraph chunkGraph = play.getChunkGraph();
+                Point waypoint = goal;
+                if (chunkGraph.isLongDistance(start.x, start.y, goal.x, goal.y))
+                    waypoint = chunkGraph.findWaypoint(start.x, start.y, goal.x, goal.y);
+                if (waypoint != null) {
+                    request.addGoal(toIndex(waypoint), 0, 0);
+                    if (!waypoint.equals(goal))
+                        request.setFallbackGoal(goal);
+                }
+            }
+        }
+
+        if (request.getGoalCount() == 0) {
+            completeRequest(request, null, -1);
+            return false;
+        }
+        return true;
+    }
+
+    private void startSearch() {
+        Point start = activeRequest.getStart();
+        searchEngine.beginSearch(start.x, start.y, activeRequest.getGoals(), activeRequest.getGoalPenalties(),
+                activeRequest.getGoalCount(), activeRequest.getSearchMode(), play);
+        searchEngine.setLimits(activeRequest.getMaxExpansions(), activeRequest.getMaxNanos());
+        if (activeRequest.getUnit() != null)
+            searchEngine.setReservations(play.getReservationTable(), activeRequest.getUnit());
+    }
+
+    private void completeRequest(PathRequest request, ArrayList<Point> path, int tag) {
+        if (request.isCancelled()) {
+            releaseFollowers(request);
+            return;
+        }
+
+        ArrayList<PathRequest> followers = request.removeFollowers();
+
+        requestsCompleted++;
+        if (request.isCutOff())
+            requestsCutOff++;
+
+        // A cut off path leads towards the goal without reaching it, which is no use to anyone else
+        if (path != null && request.getCacheGoal() != null && !request.isCutOff())
+            play.getPathCache().put(request.getStart(), request.getCacheGoal(), true, path);
+
+        // Preserve the unit's next tile in their path, the same as a search run on the spot would
+        Unit u = request.getUnit();
+        Point nextTile = null;
+        if (u != null) {
+            if (!request.isOnward() && u.getPath() != null && !u.getPath().isEmpty() && u.getPath().isAt(0, request.getStart()))
+                nextTile = request.getStart();
+            u.setPathRequest(null);
+        }
+        request.getCallback().pathFound(Path.of(nextTile, path), tag);
+
+        if (followers == null)
+            return;
+        for (PathRequest follower : followers) {
+            if (follower.isCancelled())
+                continue;
+            // With no shared path the leader may just have been boxed in by other units, and a follower that can't
+            // walk onto the path is in the same spot, so either way they search for themselves after all
+            ArrayList<Point> followerPath = path == null ? null : splice(follower.getStart(), request.getStart(), path);
+            if (followerPath == null) {
+                requests.add(follower);
+                continue;
+            }
+            follower.setCutOff(request.isCutOff());
+            completeRequest(follower, followerPath, tag);
+        }
+    }
+
+    private void releaseFollowers(PathRequest request) {
+        // The request was dropped, so whoever was waiting on it goes back in the queue to be searched on their own
+        ArrayList<PathRequest> followers = request.removeFollowers();
+        if (followers != null)
+            for (PathRequest follower : followers)
+                if (!follower.isCancelled())
+                    requests.add(follower);
+    }
+
+    private ArrayList<Point> splice(Point start, Point sharedStart, ArrayList<Point> sharedPath) {
+        // Joins the shared path at the furthest tile the follower can walk straight to from their own tile,
+        // or returns null if none is close enough and unobstructed
+        for (int i = sharedPath.size() - 1; i >= -1; i--) {
+            Point joint = i == -1 ? sharedStart : sharedPath.get(i);
+            if (Math.max(Math.abs(joint.x - start.x), Math.abs(joint.y - start.y)) > COALESCE_RADIUS)
+                continue;
+            ArrayList<Point> path = walk(start, joint);
+            if (path != null) {
+                path.addAll(sharedPath.subList(i + 1, sharedPath.size()));
+                return path;
+            }
+        }
+        return null;
+    }
+
+    private ArrayList<Point> walk(Point from, Point to) {
+        // Diagonally then straight, which is the shortest way when nothing is in the way. Diagonal steps follow the
+        // search engine's rule of needing one of the two cardinal tiles beside them open
+        ArrayList<Point> path = new ArrayList<>();
+        int x = from.x;
+        int y = from.y;
+        while (x != to.x || y != to.y) {
+            int nx = x + Integer.signum(to.x - x);
+            int ny = y + Integer.signum(to.y - y);
+            if (!AStar.isTileOpen(nx, ny, play))
+                return null;
+            if (nx != x && ny != y && !AStar.isTileOpen(nx, y, play) && !AStar.isTileOpen(x, ny, play))
+                return null;
+            x = nx;
+            y = ny;
+            path.add(new Point(x, y));
+        }
+        return path;
+    }
+
+    private int toIndex(Point tile) {
+        return tile.y * searchEngine.getWidth() + tile.x;
+    }
+
+    public long getRequestsCompleted() {
+        return requestsCompleted;
+    }
+
+    public long getRequestsCutOff() {
+        return requestsCutOff;
+    }
+
+    public long getRequestsCoalesced() {
+        return requestsCoalesced;
+    }
+
+    public boolean isIdle() {
+        return activeRequest == null && requests.isEmpty();
+    }
+
+    public void setBatchSolver(BatchPathSolver batchSolver) {
+        // Null switches back to time slicing
+        if (activeRequest != null) {
+            searchEngine.finishSearch();
+            requests.add(activeRequest);
+            activeRequest = null;
+        }
+        this.batchSolver = batchSolver;
+    }
+
+    public void setMaxExpansionsPerTick(int maxExpansionsPerTick) {
+        this.maxExpansionsPerTick = maxExpansionsPerTick;
+    }
+
+    public void setMaxNanosPerTick(long maxNanosPerTick) {
+        this.maxNanosPerTick = maxNanosPerTick;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+}
@@ -0,0 +1,164 @@
+package pathfinding;
+
+import gamestates.Play;
+
+import static pathfinding.AStar.isTileStaticallyOpen;
+
+public class RegionMap {
+
+    // Every statically open tile is labelled with the connected region it belongs to, 0 means blocked.
+    // Regions are 4-connected, which is enough since a diagonal step always needs an open cardinal tile
+    private Play play;
+    private int width, height;
+    private int[] labels;
+    private int[] queue;
+    private int nextLabel = 1;
+
+    public RegionMap(Play play) {
+        this.play = play;
+        this.width = play.getMap().getTileData()[0].length;
+        this.height = play.getMap().getTileData().length;
+        this.labels = new int[width * height];
+        this.queue = new int[width * height];
+        initLabels();
+    }
+
+    private void initLabels() {
+        for (int tile = 0; tile < labels.length; tile++)
+            labels[tile] = isTileStaticallyOpen(tile % width, tile / width, play) ? -1 : 0;
+
+        for (int tile = 0; tile < labels.length; tile++)
+            if (labels[tile] == -1)
+                floodFill(tile, -1, nextLabel++);
+    }
+
+    public boolean isReachable(int startX, int startY, int goalX, int goalY) {
+        int startLabel = labels[startY * width + startX];
+        int goalLabel = labels[goalY * width + goalX];
+        if (goalLabel == 0)
+            return false;
+        // Units never stand on static blockers, but don't turn a search away if one somehow does
+        return startLabel == 0 || startLabel == goalLabel;
+    }
+
+    public int getLabel(int tileX, int tileY) {
+        return labels[tileY * width + tileX];
+    }
+
+    public void tilesChanged(int tileX, int tileY, int tileWidth, int tileHeight) {
+        for (int y = tileY; y < tileY + tileHeight; y++)
+            for (int x = tileX; x < tileX + tileWidth; x++) {
+                int tile = y * width + x;
+                boolean isOpen = isTileStaticallyOpen(x, y, play);
+                if (isOpen && labels[tile] == 0)
+                    openTile(tile);
+                else if (!isOpen && labels[tile] != 0)
+                    blockTile(tile);
+            }
+    }
+
+    private void openTile(int tile) {
+        // A newly opened tile joins its neighbors' region, or merges them if it connects more than one
+        int x = tile % width;
+        int y = tile / width;
+        int neighborLabel = 0;
+        boolean isMerge = false;
+
+        int[] neighbors = {y > 0 ? tile - width : -1, x < width - 1 ? tile + 1 : -1,
+                y < height - 1 ? tile + width : -1, x > 0 ? tile - 1 : -1};
+        for (int neighbor : neighbors) {
+            if (neighbor == -1 || labels[neighbor] == 0)
+                continue;
+            if (neighborLabel == 0)
+                neighborLabel = labels[neighbor];
+            else if (labels[neighbor] != neighborLabel)
+                isMerge = true;
+        }
+
+        if (neighborLabel == 0)
+            labels[tile] = nextLabel++;
+        else if (!isMerge)
+            labels[tile] = neighborLabel;
+        else {
+            labels[tile] = -1;
+            floodFillOpen(tile, nextLabel++);
+        }
+    }
+
+    private void blockTile(int tile) {
+        // The region may have been split in two, so each side is relabelled from scratch. If it wasn't split,
+        // the first fill reaches every other neighbor and the rest are skipped
+        int oldLabel = labels[tile];
+        labels[tile] = 0;
+
+        int x = tile % width;
+        int y = tile / width;
+        if (y > 0 && labels[tile - width] == oldLabel)
+            floodFill(tile - width, oldLabel, nextLabel++);
+        if (x < width - 1 && labels[tile + 1] == oldLabel)
+            floodFill(tile + 1, oldLabel, nextLabel++);
+        if (y < height - 1 && labels[tile + width] == oldLabel)
+            floodFill(tile + width, oldLabel, nextLabel++);
+        if (x > 0 && labels[tile - 1] == oldLabel)
+            floodFill(tile - 1, oldLabel, nextLabel++);
+    }
+
+    private void floodFill(int start, int fromLabel, int toLabel) {
+        // Relabels every tile 4-connected to the start that currently carries fromLabel
+        int head = 0, tail = 0;
+        labels[start] = toLabel;
+        queue[tail++] = start;
+
+        while (head < tail) {
+            int tile = queue[head++];
+            int x = tile % width;
+            int y = tile / width;
+            if (y > 0 && labels[tile - width] == fromLabel) {
+                labels[tile - width] = toLabel;
+                queue[tail++] = tile - width;
+            }
+            if (x < width - 1 && labels[tile + 1] == fromLabel) {
+                labels[tile + 1] = toLabel;
+                queue[tail++] = tile + 1;
+            }
+            if (y < height - 1 && labels[tile + width] == fromLabel) {
+                labels[tile + width] = toLabel;
+                queue[tail++] = tile + width;
+            }
+            if (x > 0 && labels[tile - 1] == fromLabel) {
+                labels[tile - 1] = toLabel;
+                queue[tail++] = tile - 1;
+            }
+        }
+    }
+
+    private void floodFillOpen(int start, int toLabel) {
+        // Relabels every open tile 4-connected to the start, whatever region it was in before
+        int head = 0, tail = 0;
+        labels[start] = toLabel;
+        queue[tail++] = start;
+
+        while (head < tail) {
+            int tile = queue[head++];
+            int x = tile % width;
+            int y = tile / width;
+            if (y > 0 && labels[tile - width] != 0 && labels[tile - width] != toLabel) {
+                labels[tile - width] = toLabel;
+                queue[tail++] = tile - width;
+            }
+            if (x < width - 1 && labels[tile + 1] != 0 && labels[tile + 1] != toLabel) {
+                labels[tile + 1] = toLabel;
+                queue[tail++] = tile + 1;
+            }
+            if (y < height - 1 && labels[tile + width] != 0 && labels[tile + width] != toLabel) {
+                labels[tile + width] = toLabel;
+                queue[tail++] = tile + width;
+            }
+            if (x > 0 && labels[tile - 1] != 0 && labels[tile - 1] != toLabel) {
+                labels[tile - 1] = toLabel;
+                queue[tail++] = tile - 1;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package pathfinding;
+
+import entities.units.Unit;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ReplannerPool {
+
+    private static final int MAX_PLANNERS = 8;
+    // A planner its unit hasn't replanned with for this many ticks is dropped along with its arrays
+    private static final int IDLE_TICKS = 600;
+
+    // Each planner holds map sized arrays, so only the units that replanned most recently keep their search tree.
+    // The least recently used planner is handed to the next unit that needs one. Planners are only kept for as
+    // long as units keep replanning, a quiet spell lets go of all of them
+    private int width, height;
+    private long tick, lastAcquiredTick;
+    private ArrayList<IncrementalPlanner> sparePlanners = new ArrayList<>();
+    private LinkedHashMap<Unit, Entry> planners = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Unit, Entry> eldest) {
+            if (size() <= MAX_PLANNERS)
+                return false;
+            sparePlanners.add(eldest.getValue().planner);
+            return true;
+        }
+    };
+
+    private static class Entry {
+        private IncrementalPlanner planner;
+        private long lastUsedTick;
+    }
+
+    public ReplannerPool(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public void update() {
+        // Entries are in order of last use, so the idle ones are all at the front
+        tick++;
+        Iterator<Entry> entries = planners.values().iterator();
+        while (entries.hasNext() && tick - entries.next().lastUsedTick > IDLE_TICKS)
+            entries.remove();
+        if (tick - lastAcquiredTick > IDLE_TICKS)
+            sparePlanners.clear();
+    }
+
+    public IncrementalPlanner acquire(Unit u) {
+        lastAcquiredTick = tick;
+        Entry entry = planners.get(u);
+        if (entry == null) {
+            entry = new Entry();
+            entry.planner = sparePlanners.isEmpty() ? new IncrementalPlanner(width, height) : sparePlanners.remove(sparePlanners.size() - 1);
+            entry.planner.clear();
+            planners.put(u, entry);
+        }
+        entry.lastUsedTick = tick;
+        return entry.planner;
+    }
+
+    public void release(Unit u) {
+        Entry entry = planners.remove(u);
+        if (entry != null)
+            sparePlanners.add(entry.planner);
+    }
+
+    public void tilesChanged() {
+        // Planners only notice changes near their unit, a building placed or removed elsewhere needs a fresh tree
+        for (Entry entry : planners.values())
+            entry.planner.clear();
+    }
+
+    public int size() {
+        return planners.size();
+    }
+
+}
@@ -0,0 +1,149 @@
+package pathfinding;
+
+import entities.units.Unit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static main.Game.*;
+
+public class ReservationTable {
+
+    // Reservations are kept in buckets of this many ticks, for this many buckets ahead of the current one
+    private static final int TICKS_PER_BUCKET = 8;
+    private static final int NUM_BUCKETS = 16;
+    // Extra cost, in tiles, of planning through a tile another unit will be on at the time
+    private static final double RESERVATION_PENALTY = 2;
+    private static final int NONE = -1;
+
+    // Every unit's path is stamped into a ring of time buckets, so "who will be on this tile in n ticks" is a
+    // single array lookup. The tile a unit is stepping onto right now is also tracked separately for as long as
+    // they hold it, no matter how long they wait there, which is what Play.isTileBlockedOrReserved asks about
+    private int width, numTiles;
+    private int[] bucketOwners;
+    private long tick;
+
+    // Number of units stepping onto each tile, and the sum of their ids. When exactly one unit holds a
+    // tile the sum is their id, which is enough to tell whether the holder is the unit asking
+    private int[] nextStepCounts;
+    private int[] nextStepIdSums;
+
+    // What each unit holds, by unit id, so reserving along a new path never allocates. A unit claims each bucket
+    // for at most one tile of their path, so their slots fit in NUM_BUCKETS entries starting at id * NUM_BUCKETS
+    private int[] nextTiles = new int[64];
+    private int[] slots = new int[64 * NUM_BUCKETS];
+    private int[] slotCounts = new int[64];
+
+    public ReservationTable(int width, int height, ArrayList<Unit> units) {
+        this.width = width;
+        this.numTiles = width * height;
+        this.bucketOwners = new int[NUM_BUCKETS * numTiles];
+        this.nextStepCounts = new int[numTiles];
+        this.nextStepIdSums = new int[numTiles];
+        Arrays.fill(nextTiles, NONE);
+        for (Unit u : units)
+            if (u.isActive())
+                reserve(u);
+    }
+
+    public void update() {
+        // The bucket that just ended is reused for the furthest one ahead
+        tick++;
+        if (tick % TICKS_PER_BUCKET == 0) {
+            int expired = (int) ((tick / TICKS_PER_BUCKET - 1) % NUM_BUCKETS);
+            Arrays.fill(bucketOwners, expired * numTiles, (expired + 1) * numTiles, 0);
+        }
+    }
+
+    public void reserve(Unit u) {
+        // Replaces the unit's reservations with ones along their current path, timed from where they stand
+        release(u);
+        Path path = u.getPath();
+        if (path == null || path.isEmpty() || u.getSpeed() <= 0)
+            return;
+
+        int id = u.getId();
+        if (id >= nextTiles.length)
+            grow(id + 1);
+        int nextTile = path.getY(0) * width + path.getX(0);
+        nextTiles[id] = nextTile;
+        nextStepCounts[nextTile]++;
+        nextStepIdSums[nextTile] += id;
+
+        long bucket = tick / TICKS_PER_BUCKET;
+        long lastBucket = bucket + NUM_BUCKETS - 1;
+        double arrival = tick + Math.hypot(toPixelX(path.getX(0)) - u.getX(), toPixelY(path.getY(0)) - u.getY()) / u.getSpeed();
+        long fromBucket = bucket;
+        for (int i = 0; i < path.size() && fromBucket <= lastBucket; i++) {
+            int tile = path.getY(i) * width + path.getX(i);
+            // The unit holds each tile from the moment they start towards it until they reach the next one
+            long toBucket = lastBucket;
+            if (i + 1 < path.size()) {
+                arrival += TILE_SIZE * Math.hypot(path.getX(i + 1) - path.getX(i), path.getY(i + 1) - path.getY(i)) / u.getSpeed();
+                toBucket = Math.min(lastBucket, (long) arrival / TICKS_PER_BUCKET);
+            }
+            for (long b = fromBucket; b <= toBucket; b++)
+                claim((int) (b % NUM_BUCKETS) * numTiles + tile, id);
+            fromBucket = toBucket + 1;
+        }
+    }
+
+    public void release(Unit u) {
+        int id = u.getId();
+        if (id >= nextTiles.length || nextTiles[id] == NONE)
+            return;
+
+        nextStepCounts[nextTiles[id]]--;
+        nextStepIdSums[nextTiles[id]] -= id;
+        nextTiles[id] = NONE;
+        // Only slots the unit still owns are cleared. Ones from buckets that have since expired may belong to
+        // someone else by now
+        for (int i = id * NUM_BUCKETS; i < id * NUM_BUCKETS + slotCounts[id]; i++)
+            if (bucketOwners[slots[i]] == id + 1)
+                bucketOwners[slots[i]] = 0;
+        slotCounts[id] = 0;
+    }
+
+    private void claim(int slot, int unitId) {
+        // The first unit to claim a slot keeps it, later ones only see it as taken
+        if (bucketOwners[slot] != 0)
+            return;
+        bucketOwners[slot] = unitId + 1;
+        slots[unitId * NUM_BUCKETS + slotCounts[unitId]++] = slot;
+    }
+
+    private void grow(int minLength) {
+        int oldLength = nextTiles.length;
+        int length = Math.max(minLength, oldLength * 2);
+        nextTiles = Arrays.copyOf(nextTiles, length);
+        Arrays.fill(nextTiles, oldLength, length, NONE);
+        slots = Arrays.copyOf(slots, length * NUM_BUCKETS);
+        slotCounts = Arrays.copyOf(slotCounts, length);
+    }
+
+    public boolean isTileReserved(int tileX, int tileY, Unit excludedUnit) {
+        // Whether a unit other than the excluded one is stepping onto the tile
+        int tile = tileY * width + tileX;
+        int count = nextStepCounts[tile];
+        if (count == 0)
+            return false;
+        return excludedUnit == null || count > 1 || nextStepIdSums[tile] != excludedUnit.getId();
+    }
+
+    public boolean isReservedAt(int tileX, int tileY, double ticksAhead, Unit excludedUnit) {
+        // Whether a unit other than the excluded one plans to be on the tile that many ticks from now
+        long bucket = (tick + (long) ticksAhead) / TICKS_PER_BUCKET;
+        if (ticksAhead < 0 || bucket >= tick / TICKS_PER_BUCKET + NUM_BUCKETS)
+            return false;
+        int owner = bucketOwners[(int) (bucket % NUM_BUCKETS) * numTiles + tileY * width + tileX];
+        return owner != 0 && (excludedUnit == null || owner != excludedUnit.getId() + 1);
+    }
+
+    public double getPenalty(int tileX, int tileY, double pathCost, Unit u) {
+        // Cost added to a search stepping onto the tile after travelling pathCost tiles
+        if (isReservedAt(tileX, tileY, pathCost * TILE_SIZE / u.getSpeed(), u))
+            return RESERVATION_PENALTY;
+        return 0;
+    }
+
+}
@@ -0,0 +1,512 @@
+package pathfinding;
+
+import entities.units.Unit;
+import gamestates.Play;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class SearchEngine {
+
+    public static final double DIAGONAL_COST = Math.sqrt(2);
+    private static final int MAX_HEURISTIC_GOALS = 32;
+    private static final int MAX_LANDMARK_GOALS = 8;
+    // Default limits for a single search. A search cut off by either returns the path to the explored node
+    // closest to its goals, and wasCutOff says so. The queue passes that on and the unit asks for the rest from
+    // there, AStar's direct entry points return no path instead
+    public static final int DEFAULT_MAX_EXPANSIONS = 40000;
+    public static final long DEFAULT_MAX_NANOS = 50_000_000;
+    // How many nodes are expanded between clock checks
+    private static final int EXPANSIONS_PER_CLOCK_CHECK = 64;
+
+    // Tiles are addressed by index (tileY * width + tileX). Per-tile search state is only valid when its
+    // generation matches the current search, so nothing has to be cleared or allocated between searches
+    private int width, height;
+    private IndexedHeap openList;
+    private double[] gCost;
+    private int[] parent;
+    private int[] visitedGeneration, closedGeneration;
+    private int generation;
+
+    private TileGrid grid;
+    private final LiveTileGrid liveGrid = new LiveTileGrid();
+    private int[] goals;
+    private double[] goalPenalties;
+    private final int[] singleGoal = new int[1];
+    private final double[] singleGoalPenalty = new double[1];
+    private int goalCount;
+    private int[] goalGeneration;
+    private boolean useJumpPoints;
+    private LandmarkTable landmarks;
+    private double[] goalLandmarkDistances = new double[0];
+    private ReservationTable reservations;
+    private Unit reservingUnit;
+    private int nodesExpanded;
+
+    private int start, bestGoal;
+    private double bestCost;
+    private boolean searching;
+
+    private int maxExpansions;
+    private long maxNanos, elapsedNanos;
+    private int closestNode;
+    private double closestHeuristic;
+    private boolean cutOff;
+
+    public SearchEngine(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int numTiles = width * height;
+        this.openList = new IndexedHeap(numTiles);
+        this.gCost = new double[numTiles];
+        this.parent = new int[numTiles];
+        this.visitedGeneration = new int[numTiles];
+        this.closedGeneration = new int[numTiles];
+        this.goalGeneration = new int[numTiles];
+    }
+
+    public ArrayList<Point> pathFind(int startX, int startY, int goalX, int goalY, int searchMode, Play play) {
+        singleGoal[0] = toIndex(goalX, goalY);
+        return pathFind(startX, startY, singleGoal, singleGoalPenalty, 1, searchMode, play);
+    }
+
+    public ArrayList<Point> pathFind(int startX, int startY, int goalX, int goalY, int searchMode, TileGrid grid) {
+        singleGoal[0] = toIndex(goalX, goalY);
+        return pathFind(startX, startY, singleGoal, singleGoalPenalty, 1, searchMode, grid);
+    }
+
+    public ArrayList<Point> pathFind(int startX, int startY, int[] goals, double[] goalPenalties, int goalCount,
+                                     int searchMode, Play play) {
+        liveGrid.setPlay(play);
+        return pathFind(startX, startY, goals, goalPenalties, goalCount, searchMode, liveGrid);
+    }
+
+    public ArrayList<Point> pathFind(int startX, int startY, int[] goals, double[] goalPenalties, int goalCount,
+                                     int searchMode, TileGrid grid) {
+        beginSearch(startX, startY, goals, goalPenalties, goalCount, searchMode, grid);
+        stepSearch(Integer.MAX_VALUE);
+        return finishSearch();
+    }
+
+    public void beginSearch(int startX, int startY, int[] goals, double[] goalPenalties, int goalCount,
+                            int searchMode, Play play) {
+        liveGrid.setPlay(play);
+        beginSearch(startX, startY, goals, goalPenalties, goalCount, searchMode, liveGrid);
+    }
+
+    public void beginSearch(int startX, int startY, int[] goals, double[] goalPenalties, int goalCount,
+                            int searchMode, TileGrid grid) {
+        // Searches towards several goals at once and finds the path with the lowest cost plus goal penalty.
+        // The heuristic is the smallest distance plus penalty over all goals, which keeps it admissible
+        this.grid = grid;
+        this.goals = goals;
+        this.goalPenalties = goalPenalties;
+        this.goalCount = goalCount;
+        this.useJumpPoints = searchMode == AStar.SEARCH_JUMP_POINT;
+        this.nodesExpanded = 0;
+
+        // Each goal's landmark distances are looked up once here rather than at every node
+        landmarks = goalCount <= MAX_LANDMARK_GOALS ? grid.getLandmarks() : null;
+        if (landmarks != null) {
+            int numLandmarks = landmarks.getNumLandmarks();
+            if (goalLandmarkDistances.length < goalCount * numLandmarks)
+                goalLandmarkDistances = new double[MAX_LANDMARK_GOALS * numLandmarks];
+            for (int i = 0; i < goalCount; i++)
+                landmarks.getDistances(goals[i], goalLandmarkDistances, i * numLandmarks);
+        }
+
+        start = toIndex(startX, startY);
+        searching = true;
+        maxExpansions = DEFAULT_MAX_EXPANSIONS;
+        maxNanos = DEFAULT_MAX_NANOS;
+        elapsedNanos = 0;
+        restartSearch();
+    }
+
+    private void restartSearch() {
+        // Clears the explored tiles and opens the start again. Limits and time spent so far carry over
+        nextGeneration();
+        for (int i = 0; i < goalCount; i++)
+            goalGeneration[goals[i]] = generation;
+
+        openList.clear();
+        bestGoal = -1;
+        bestCost = Double.MAX_VALUE;
+        closestNode = start;
+        closestHeuristic = Double.MAX_VALUE;
+        cutOff = false;
+
+        visit(start, -1, 0);
+        openList.add(start, getHeuristic(start));
+    }
+
+    public void setReservations(ReservationTable reservations, Unit u) {
+        // Steers the current grid search around tiles other units will be on by the time u gets there.
+        // Jump point search assumes uniform costs and ignores it while searching, but a path it finds through a
+        // reserved tile is thrown away and searched again tile by tile. Cleared when the search finishes
+        this.reservations = reservations;
+        this.reservingUnit = u;
+    }
+
+    public void setLimits(int maxExpansions, long maxNanos) {
+        // Overrides the default limits for the current search
+        this.maxExpansions = maxExpansions;
+        this.maxNanos = maxNanos;
+    }
+
+    public boolean stepSearch(int maxExpansions) {
+        // Expands up to maxExpansions nodes and returns true once the search is over. Time is only counted
+        // while stepping, so a search sliced across ticks is held to the same limit as one run in one go
+        int expansionLimit = nodesExpanded + maxExpansions;
+        if (expansionLimit < 0)
+            expansionLimit = Integer.MAX_VALUE;
+        long stepStart = System.nanoTime();
+
+        while (!openList.isEmpty() && openList.peekKey() < bestCost) {
+            if (nodesExpanded >= expansionLimit) {
+                elapsedNanos += System.nanoTime() - stepStart;
+                return false;
+            }
+            if (nodesExpanded >= this.maxExpansions || (nodesExpanded % EXPANSIONS_PER_CLOCK_CHECK == 0
+                    && elapsedNanos + System.nanoTime() - stepStart > maxNanos)) {
+                cutOff = true;
+                break;
+            }
+
+            double key = openList.peekKey();
+            int current = openList.poll();
+            closedGeneration[current] = generation;
+
+            double heuristic = key - gCost[current];
+            if (heuristic < closestHeuristic) {
+                closestHeuristic = heuristic;
+                closestNode = current;
+            }
+
+            if (isGoal(current)) {
+                double penalty = getGoalPenalty(current);
+                if (gCost[current] + penalty < bestCost) {
+                    bestCost = gCost[current] + penalty;
+                    bestGoal = current;
+                }
+                // Nothing left in the open list can beat a goal reached without a penalty
+                if (penalty == 0)
+                    break;
+            }
+
+            nodesExpanded++;
+            if (useJumpPoints)
+                expandJumpPoints(current);
+            else
+                expandNeighbors(current);
+        }
+
+        elapsedNanos += System.nanoTime() - stepStart;
+
+        // A jump point path that stays clear of every reservation costs the same with the penalties counted, and
+        // nothing can be cheaper than that. One that doesn't has to be weighed against going around
+        int end = bestGoal != -1 ? bestGoal : (cutOff ? closestNode : -1);
+        if (useJumpPoints && reservations != null && end != -1 && isReservedAlong(end)) {
+            useJumpPoints = false;
+            restartSearch();
+            return stepSearch(expansionLimit - nodesExpanded);
+        }
+
+        searching = false;
+        return true;
+    }
+
+    public ArrayList<Point> finishSearch() {
+        // Returns the path found by the last search, or null if it failed or was abandoned. A search cut off by
+        // its limits before reaching a goal returns the path to the closest node it explored instead
+        openList.clear();
+        this.grid = null;
+        liveGrid.setPlay(null);
+        this.goals = null;
+        this.goalPenalties = null;
+        this.reservations = null;
+        this.reservingUnit = null;
+        this.landmarks = null;
+
+        if (searching) {
+            searching = false;
+            return null;
+        }
+        if (bestGoal == -1) {
+            if (cutOff && closestNode != start)
+                return buildPath(start, closestNode);
+            return null;
+        }
+        return buildPath(start, bestGoal);
+    }
+
+    private void expandNeighbors(int current) {
+        int x = current % width;
+        int y = current / width;
+
+        // Cardinal Directions (Up, Right, Down, Left)
+        boolean isUpOpen = y > 0 && grid.isOpen(x, y - 1);
+        boolean isRightOpen = x < width - 1 && grid.isOpen(x + 1, y);
+        boolean isDownOpen = y < height - 1 && grid.isOpen(x, y + 1);
+        boolean isLeftOpen = x > 0 && grid.isOpen(x - 1, y);
+
+        if (isUpOpen) relax(current, current - width, 1);
+        if (isRightOpen) relax(current, current + 1, 1);
+        if (isDownOpen) relax(current, current + width, 1);
+        if (isLeftOpen) relax(current, current - 1, 1);
+
+        // Diagonal Directions (Top-left, Top-right, Bottom-left, Bottom-right)
+        // Corners may only be cut when at least one of the adjacent cardinal tiles is open
+        if ((isUpOpen || isLeftOpen) && y > 0 && x > 0 && grid.isOpen(x - 1, y - 1))
+            relax(current, current - width - 1, DIAGONAL_COST);
+
+        if ((isUpOpen || isRightOpen) && y > 0 && x < width - 1 && grid.isOpen(x + 1, y - 1))
+            relax(current, current - width + 1, DIAGONAL_COST);
+
+        if ((isDownOpen || isLeftOpen) && y < height - 1 && x > 0 && grid.isOpen(x - 1, y + 1))
+            relax(current, current + width - 1, DIAGONAL_COST);
+
+        if ((isDownOpen || isRightOpen) && y < height - 1 && x < width - 1 && grid.isOpen(x + 1, y + 1))
+            relax(current, current + width + 1, DIAGONAL_COST);
+    }
+
+    private void expandJumpPoints(int current) {
+        int x = current % width;
+        int y = current / width;
+
+        if (parent[current] == -1) {
+            // The start node has no direction of travel, so every legal move is a candidate
+            for (int dy = -1; dy <= 1; dy++)
+                for (int dx = -1; dx <= 1; dx++)
+                    if (dx != 0 || dy != 0)
+                        jumpFrom(current, x, y, dx, dy);
+            return;
+        }
+
+        int dx = Integer.signum(x - parent[current] % width);
+        int dy = Integer.signum(y - parent[current] / width);
+
+        if (dx != 0 && dy != 0) {
+            // Natural neighbors of a diagonal move, followed by the forced neighbors behind each blocked cardinal
+            jumpFrom(current, x, y, 0, dy);
+            jumpFrom(current, x, y, dx, 0);
+            jumpFrom(current, x, y, dx, dy);
+            if (!isOpen(x - dx, y))
+                jumpFrom(current, x, y, -dx, dy);
+            if (!isOpen(x, y - dy))
+                jumpFrom(current, x, y, dx, -dy);
+        } else if (dx != 0) {
+            jumpFrom(current, x, y, dx, 0);
+            if (!isOpen(x, y + 1))
+                jumpFrom(current, x, y, dx, 1);
+            if (!isOpen(x, y - 1))
+                jumpFrom(current, x, y, dx, -1);
+        } else {
+            jumpFrom(current, x, y, 0, dy);
+            if (!isOpen(x + 1, y))
+                jumpFrom(current, x, y, 1, dy);
+            if (!isOpen(x - 1, y))
+                jumpFrom(current, x, y, -1, dy);
+        }
+    }
+
+    private void jumpFrom(int current, int x, int y, int dx, int dy) {
+        if (!canStep(x, y, dx, dy))
+            return;
+
+        int next = (dx != 0 && dy != 0) ? jumpDiagonal(x + dx, y + dy, dx, dy) : jumpStraight(x + dx, y + dy, dx, dy);
+        if (next == -1)
+            return;
+
+        relax(current, next, (dx != 0 && dy != 0) ? getSteps(current, next) * DIAGONAL_COST : getSteps(current, next));
+    }
+
+    private int jumpStraight(int x, int y, int dx, int dy) {
+        while (isOpen(x, y)) {
+            if (isGoal(toIndex(x, y)))
+                return toIndex(x, y);
+
+            // A tile is a jump point when a blocked tile beside it hides a tile that can only be reached through it
+            if (dx != 0) {
+                if ((isOpen(x + dx, y + 1) && !isOpen(x, y + 1)) || (isOpen(x + dx, y - 1) && !isOpen(x, y - 1)))
+                    return toIndex(x, y);
+            } else {
+                if ((isOpen(x + 1, y + dy) && !isOpen(x + 1, y)) || (isOpen(x - 1, y + dy) && !isOpen(x - 1, y)))
+                    return toIndex(x, y);
+            }
+
+            x += dx;
+            y += dy;
+        }
+        return -1;
+    }
+
+    private int jumpDiagonal(int x, int y, int dx, int dy) {
+        while (isOpen(x, y)) {
+            if (isGoal(toIndex(x, y)))
+                return toIndex(x, y);
+
+            if ((isOpen(x - dx, y + dy) && !isOpen(x - dx, y)) || (isOpen(x + dx, y - dy) && !isOpen(x, y - dy)))
+                return toIndex(x, y);
+
+            // Any jump point found along the cardinal components makes this tile a jump point as well
+            if (jumpStraight(x + dx, y, dx, 0) != -1 || jumpStraight(x, y + dy, 0, dy) != -1)
+                return toIndex(x, y);
+
+            if (!canStep(x, y, dx, dy))
+                return -1;
+
+            x += dx;
+            y += dy;
+        }
+        return -1;
+    }
+
+    private boolean isReservedAlong(int end) {
+        // Whether the path to end steps onto a tile another unit will be on by then, timed by the cost each tile
+        // is reached at. Jump point links are walked a tile at a time
+        for (int node = end; node != start; node = parent[node]) {
+            int from = parent[node];
+            int dx = Integer.signum(node % width - from % width);
+            int dy = Integer.signum(node / width - from / width);
+            double stepCost = (dx != 0 && dy != 0) ? DIAGONAL_COST : 1;
+            for (int step = 1; step <= getSteps(from, node); step++) {
+                int tile = from + step * (dy * width + dx);
+                if (reservations.getPenalty(tile % width, tile / width, gCost[from] + step * stepCost, reservingUnit) > 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean canStep(int x, int y, int dx, int dy) {
+        if (!isOpen(x + dx, y + dy))
+            return false;
+        return dx == 0 || dy == 0 || isOpen(x + dx, y) || isOpen(x, y + dy);
+    }
+
+    private boolean isOpen(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height && grid.isOpen(x, y);
+    }
+
+    private void relax(int current, int next, double stepCost) {
+        if (closedGeneration[next] == generation)
+            return;
+
+        double g = gCost[current] + stepCost;
+        if (reservations != null && !useJumpPoints)
+            g += reservations.getPenalty(next % width, next / width, g, reservingUnit);
+        if (visitedGeneration[next] == generation) {
+            if (g < gCost[next]) {
+                visit(next, current, g);
+                openList.decreaseKey(next, g + getHeuristic(next));
+            }
+        } else {
+            visit(next, current, g);
+            openList.add(next, g + getHeuristic(next));
+        }
+    }
+
+    private void visit(int node, int parentNode, double g) {
+        visitedGeneration[node] = generation;
+        parent[node] = parentNode;
+        gCost[node] = g;
+    }
+
+    private double getHeuristic(int node) {
+        // Euclidean distance to the closest goal, counting its penalty. With too many goals to check at every
+        // node the search falls back to plain Dijkstra. Landmarks raise the distance wherever water or walls
+        // stand between the node and the goal, and both bounds are consistent so the larger one is too
+        if (goalCount > MAX_HEURISTIC_GOALS)
+            return 0;
+        double heuristic = Double.MAX_VALUE;
+        for (int i = 0; i < goalCount; i++) {
+            double xDist = node % width - goals[i] % width;
+            double yDist = node / width - goals[i] / width;
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist);
+            if (landmarks != null)
+                distance = Math.max(distance, landmarks.getLowerBound(node, goalLandmarkDistances, i * landmarks.getNumLandmarks()));
+            heuristic = Math.min(heuristic, distance + goalPenalties[i]);
+        }
+        return heuristic;
+    }
+
+    private boolean isGoal(int node) {
+        return goalGeneration[node] == generation;
+    }
+
+    private double getGoalPenalty(int node) {
+        for (int i = 0; i < goalCount; i++)
+            if (goals[i] == node)
+                return goalPenalties[i];
+        return 0;
+    }
+
+    private ArrayList<Point> buildPath(int start, int goal) {
+        // Jump point search links nodes that are a straight or diagonal line apart, so every parent link is
+        // measured in steps and the tiles in between are filled in along that line
+        int length = 0;
+        for (int node = goal; node != start; node = parent[node])
+            length += getSteps(node, parent[node]);
+
+        ArrayList<Point> path = new ArrayList<>(length);
+        for (int i = 0; i < length; i++)
+            path.add(null);
+
+        int idx = length - 1;
+        for (int node = goal; node != start; node = parent[node]) {
+            int x = node % width;
+            int y = node / width;
+            int dx = Integer.signum(parent[node] % width - x);
+            int dy = Integer.signum(parent[node] / width - y);
+            for (int step = getSteps(node, parent[node]); step > 0; step--) {
+                path.set(idx--, new Point(x, y));
+                x += dx;
+                y += dy;
+            }
+        }
+
+        return path;
+    }
+
+    private int getSteps(int from, int to) {
+        return Math.max(Math.abs(from % width - to % width), Math.abs(from / width - to / width));
+    }
+
+    private void nextGeneration() {
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(visitedGeneration, 0);
+            Arrays.fill(closedGeneration, 0);
+            Arrays.fill(goalGeneration, 0);
+            generation = 0;
+        }
+        generation++;
+    }
+
+    private int toIndex(int tileX, int tileY) {
+        return tileY * width + tileX;
+    }
+
+    public boolean wasCutOff() {
+        // Whether the last search hit its limits. A goal found before that is still the best one
+        return cutOff && bestGoal == -1;
+    }
+
+    public int getResultGoal() {
+        return bestGoal;
+    }
+
+    public int getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+}
@@ -0,0 +1,17 @@
+package pathfinding;
+
+public interface TileGrid {
+
+    // Whether a unit may step onto the tile. Callers stay within the grid's bounds
+    boolean isOpen(int tileX, int tileY);
+
+    // Landmark distances for the A* heuristic, or null to use the straight line distance alone
+    default LandmarkTable getLandmarks() {
+        return null;
+    }
+
+    int getWidth();
+
+    int getHeight();
+
+}
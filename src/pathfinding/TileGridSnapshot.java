@@ -0,0 +1,77 @@
+package pathfinding;
+
+import entities.units.Unit;
+import gamestates.Play;
+
+import java.awt.*;
+
+import static main.Game.*;
+
+public class TileGridSnapshot implements TileGrid {
+
+    // Immutable copy of which tiles are open at the moment it was taken, safe to read from any number of threads.
+    // Matches AStar.isTileOpen: static blockers, tiles overlapped by a unit's hitbox and tiles reserved as a unit's next step
+    private final int width, height;
+    private final boolean[] open;
+    private final LandmarkTable landmarks;
+
+    private TileGridSnapshot(int width, int height, boolean[] open, LandmarkTable landmarks) {
+        this.width = width;
+        this.height = height;
+        this.open = open;
+        this.landmarks = landmarks;
+    }
+
+    public static TileGridSnapshot of(Play play) {
+        int width = play.getMap().getTileData()[0].length;
+        int height = play.getMap().getTileData().length;
+        boolean[] open = new boolean[width * height];
+
+        RegionMap regionMap = play.getRegionMap();
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                open[y * width + x] = regionMap.getLabel(x, y) != 0;
+
+        for (Unit u : play.getUnitHandler().getUnits()) {
+            if (!u.isActive())
+                continue;
+
+            Rectangle hitbox = u.getHitbox();
+            int minX = Math.max(0, toTileX(hitbox.x));
+            int minY = Math.max(0, toTileY(hitbox.y));
+            int maxX = Math.min(width - 1, toTileX(hitbox.x + hitbox.width - 1));
+            int maxY = Math.min(height - 1, toTileY(hitbox.y + hitbox.height - 1));
+            for (int y = minY; y <= maxY; y++)
+                for (int x = minX; x <= maxX; x++)
+                    open[y * width + x] = false;
+
+            Path path = u.getPath();
+            if (path != null && !path.isEmpty())
+                open[path.getY(0) * width + path.getX(0)] = false;
+        }
+
+        // Landmark distances only change between ticks, while no batch is being solved
+        return new TileGridSnapshot(width, height, open, play.getLandmarkTable());
+    }
+
+    @Override
+    public boolean isOpen(int tileX, int tileY) {
+        return open[tileY * width + tileX];
+    }
+
+    @Override
+    public LandmarkTable getLandmarks() {
+        return landmarks;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+}